@@ -5,13 +5,16 @@ import android.graphics.drawable.Drawable;
 /**
  * A {@link Book} object contains information related to a book.
  * It includes that an image, title, subtitle, author, summary and rate.
+ * <p>
+ * The subtitle and the summary, which is long and only shown when a card is expanded,
+ * are kept as {@link CompactText}, and decoded only the first time they are asked for.
  */
 public class Book {
 
     /**
      * Subtitle of the book.
      */
-    private String mSubtitle;
+    private CompactText mSubtitle;
 
     /**
      * Title of the book.
@@ -26,7 +29,7 @@ public class Book {
     /**
      * Summary of the book.
      */
-    private String mSummary;
+    private CompactText mSummary;
 
     /**
      * Link of the book.
@@ -43,6 +46,11 @@ public class Book {
      */
     private int mMaxRating;
 
+    /**
+     * Image url string for the book, which is also the key of its cover in the caches.
+     */
+    private String mImageUrl;
+
     /**
      * Image resource for the book.
      */
@@ -58,10 +66,32 @@ public class Book {
      * @param link          is the link of the book.
      * @param rate          is the rate for the book.
      * @param maxRating     the max rating for the book.
+     * @param imageUrl      is the image url string for the book.
      * @param imageResource is the image resource for the image associated with the book.
      */
     public Book(String subtitle, String title, String author, String summary, String link,
-                double rate, int maxRating, Drawable imageResource) {
+                double rate, int maxRating, String imageUrl, Drawable imageResource) {
+        this(CompactText.of(subtitle), title, author, CompactText.of(summary), link, rate,
+                maxRating, imageUrl, imageResource);
+    }
+
+    /**
+     * Create a new Book object whose subtitle and summary are kept encoded,
+     * such as in the buffer of the page that the book has been read from.
+     *
+     * @param subtitle      is the subtitle of the book, which may be null.
+     * @param title         is the title of the book.
+     * @param author        is the author of the book.
+     * @param summary       is the summary of the book, which may be null.
+     * @param link          is the link of the book.
+     * @param rate          is the rate for the book.
+     * @param maxRating     the max rating for the book.
+     * @param imageUrl      is the image url string for the book.
+     * @param imageResource is the image resource for the image associated with the book.
+     */
+    public Book(CompactText subtitle, String title, String author, CompactText summary,
+                String link, double rate, int maxRating, String imageUrl,
+                Drawable imageResource) {
         mSubtitle = subtitle;
         mTitle = title;
         mAuthor = author;
@@ -69,6 +99,7 @@ public class Book {
         mLink = link;
         mRate = rate;
         mMaxRating = maxRating;
+        mImageUrl = imageUrl;
         mImageResource = imageResource;
     }
 
@@ -76,7 +107,15 @@ public class Book {
      * Return the subtitle of the book.
      */
     public String getSubtitle() {
-        return mSubtitle;
+        return mSubtitle == null ? null : mSubtitle.get();
+    }
+
+    /**
+     * Return the subtitle of the book without keeping it decoded,
+     * for callers that only need it once.
+     */
+    public String peekSubtitle() {
+        return mSubtitle == null ? null : mSubtitle.peek();
     }
 
     /**
@@ -104,7 +143,32 @@ public class Book {
      * Return the summary of the book.
      */
     public String getSummary() {
-        return mSummary;
+        return mSummary == null ? null : mSummary.get();
+    }
+
+    /**
+     * Return the summary of the book without keeping it decoded,
+     * for callers that only need it once, such as writing it to the database.
+     */
+    public String peekSummary() {
+        return mSummary == null ? null : mSummary.peek();
+    }
+
+    /**
+     * Return whether the subtitle and the summary of the book are the same as those of
+     * the other book, comparing them without decoding them when possible.
+     */
+    public boolean hasSameCompactText(Book other) {
+        return CompactText.contentEquals(mSubtitle, other.mSubtitle)
+                && CompactText.contentEquals(mSummary, other.mSummary);
+    }
+
+    /**
+     * Return a copy of the book without its image resource, which shares the encoded text.
+     */
+    public Book copyWithoutImage() {
+        return new Book(mSubtitle, mTitle, mAuthor, mSummary, mLink, mRate, mMaxRating,
+                mImageUrl, null);
     }
 
     /**
@@ -121,6 +185,13 @@ public class Book {
         return mMaxRating;
     }
 
+    /**
+     * Return the image url string for the book.
+     */
+    public String getImageUrl() {
+        return mImageUrl;
+    }
+
     /**
      * Return the image resource for the book.
      */
@@ -4,6 +4,11 @@ import android.content.Context;
 import android.content.Intent;
 import android.graphics.drawable.Drawable;
 import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v4.view.ViewCompat;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.util.ListUpdateCallback;
 import android.support.v7.widget.CardView;
 import android.support.v7.widget.RecyclerView;
 import android.view.LayoutInflater;
@@ -13,13 +18,41 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * {@link BookAdapter} is an {@link RecyclerView.Adapter} that can provide the layout
  * for each list item based on a data source, which is a list of {@link Book} objects.
+ * <p>
+ * The header above the books and the footer below them are items of the list as well,
+ * so that the whole page is one recycled {@link RecyclerView}, and only the items on screen
+ * are laid out and bound. Book positions in the public methods do not count the header.
  */
-public class BookAdapter extends RecyclerView.Adapter<BookAdapter.MyViewHolder> {
+public class BookAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
+
+    /**
+     * View types of the items.
+     */
+    private static final int VIEW_TYPE_HEADER = 0;
+    private static final int VIEW_TYPE_BOOK = 1;
+    private static final int VIEW_TYPE_FOOTER = 2;
+
+    /**
+     * Number of items before the first book, which is the header.
+     */
+    private static final int HEADER_COUNT = 1;
+
+    /**
+     * Views of the header and the footer, which are owned by the activity.
+     */
+    private final View mHeaderView, mFooterView;
 
     /**
      * Create a new list of {@link Book} object.
@@ -31,15 +64,85 @@ public class BookAdapter extends RecyclerView.Adapter<BookAdapter.MyViewHolder>
      */
     private Context mContext;
 
+    /**
+     * The {@link RecyclerView} that this adapter is attached to, which may be null.
+     */
+    private RecyclerView mRecyclerView;
+
+    /**
+     * Covers that have arrived but have not been applied yet, keyed by image url string.
+     */
+    private Map<String, Drawable> mPendingImages = new HashMap<>();
+
+    /**
+     * Whether a pass that applies the pending covers has been scheduled.
+     */
+    private boolean mImageUpdateScheduled;
+
+    /**
+     * Single background thread that computes the diffs of the submitted lists, in order.
+     */
+    private static final ExecutorService DIFF_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    /**
+     * Handler of the main thread, which dispatches the computed diffs.
+     */
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Number of changes made to the book list, so that a diff computed against an older list
+     * is never dispatched.
+     */
+    private int mListVersion;
+
+    /**
+     * The latest submitted list whose diff is being computed, or null if there is none.
+     */
+    private List<Book> mSubmittedList;
+
+    /**
+     * Layouts of the text of the books, which are built on a background thread as soon as
+     * the books are submitted, so that binding or expanding a card does not measure text.
+     */
+    private final TextLayoutCache mTextLayoutCache = new TextLayoutCache();
+
+    /**
+     * Width in pixels of the text area of a collapsed and an expanded card,
+     * or 0 until the first card has been created.
+     */
+    private int mCollapsedTextAreaWidth, mExpandedTextAreaWidth;
+
+    /**
+     * Holder of the first card, whose views give the paint and the padding of the text.
+     */
+    private MyViewHolder mTemplateHolder;
+
+    /**
+     * Fetcher of the summaries, which a search does not return.
+     */
+    private final SummaryFetcher mSummaryFetcher;
+
+    /**
+     * Links of the books whose summary has failed to be fetched. The summary is fetched
+     * again when the card is expanded again.
+     */
+    private final Set<String> mFailedSummaryLinks = new HashSet<>();
+
     /**
      * Create a new {@link BookAdapter} object.
      *
-     * @param context   is the context of the Activity.
-     * @param booksList is a list of {@link Book} objects。
+     * @param context    is the context of the Activity.
+     * @param booksList  is a list of {@link Book} objects。
+     * @param headerView is the view above the books.
+     * @param footerView is the view below the books.
      */
-    public BookAdapter(Context context, List<Book> booksList) {
+    public BookAdapter(Context context, List<Book> booksList,
+                       View headerView, View footerView) {
         mContext = context;
+        mSummaryFetcher = SummaryFetcher.getInstance(context);
         mBooksList = booksList;
+        mHeaderView = headerView;
+        mFooterView = footerView;
     }
 
     /**
@@ -74,13 +177,88 @@ public class BookAdapter extends RecyclerView.Adapter<BookAdapter.MyViewHolder>
      * @return a new ViewHolder that holds a View of the given view type.
      */
     @Override
-    public MyViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+    public RecyclerView.ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+        // The header and the footer are single views, which are never inflated here.
+        if (viewType == VIEW_TYPE_HEADER) {
+            return new HeaderFooterViewHolder(mHeaderView);
+        } else if (viewType == VIEW_TYPE_FOOTER) {
+            return new HeaderFooterViewHolder(mFooterView);
+        }
+
         // Inflate the custom layout.
         View itemView = LayoutInflater.from(parent.getContext())
                 .inflate(R.layout.list_item, parent, false);
 
         // Return a new holder instance.
-        return new MyViewHolder(itemView);
+        MyViewHolder holder = new MyViewHolder(itemView);
+        if (mTemplateHolder == null && parent.getWidth() > 0) {
+            // Now that the width of the list is known, lay out the text of the books.
+            measureTextAreas(holder, parent);
+            prefetchTextLayouts(mBooksList);
+        }
+        return holder;
+    }
+
+    /**
+     * Helper method that compute the width of the text area of the cards, which is the width
+     * of the list, less the margins and the padding of a card, and the width of its cover.
+     *
+     * @param holder is the holder of a card that has just been inflated.
+     * @param parent is the list of books.
+     */
+    private void measureTextAreas(MyViewHolder holder, ViewGroup parent) {
+        mTemplateHolder = holder;
+        int cardWidth = parent.getWidth() - parent.getPaddingLeft() - parent.getPaddingRight()
+                - holder.cardView.getPaddingLeft() - holder.cardView.getPaddingRight();
+        mCollapsedTextAreaWidth = cardWidth - 2 * mContext.getResources()
+                .getDimensionPixelOffset(R.dimen.card_horizontal_margin)
+                - (int) mContext.getResources().getDimension(R.dimen.book_image_width);
+        mExpandedTextAreaWidth = cardWidth - 2 * mContext.getResources()
+                .getDimensionPixelOffset(R.dimen.card_expanded_horizontal_margin)
+                - (int) mContext.getResources().getDimension(R.dimen.book_image_expanded_width);
+    }
+
+    /**
+     * Helper method that lay out the text of the books on a background thread, in the widths
+     * that they are shown in: the title, subtitle and author of a collapsed card,
+     * and the title and summary of an expanded card. The subtitle and the summary are
+     * decoded for the layout only, and stay encoded in the books until they are bound.
+     *
+     * @param books is the books whose text is laid out.
+     */
+    private void prefetchTextLayouts(List<Book> books) {
+        if (mTemplateHolder == null) {
+            // The width of the cards is not known until the first card is created.
+            return;
+        }
+        final List<Book> booksToLayOut = new ArrayList<>(books);
+        // The views of the template are only read, and their paints are never changed.
+        final MyViewHolder template = mTemplateHolder;
+        final int collapsedWidth = mCollapsedTextAreaWidth;
+        final int expandedWidth = mExpandedTextAreaWidth;
+        TextLayoutCache.runInBackground(new Runnable() {
+            @Override
+            public void run() {
+                for (Book book : booksToLayOut) {
+                    layOutText(template.bookTitleView, book.getTitle(), collapsedWidth);
+                    layOutText(template.bookSubtitleView, book.peekSubtitle(), collapsedWidth);
+                    layOutText(template.bookAuthorView, book.getAuthor(), collapsedWidth);
+                    layOutText(template.bookTitleView, book.getTitle(), expandedWidth);
+                    layOutText(template.bookSummaryView, book.peekSummary(), expandedWidth);
+                }
+            }
+        });
+    }
+
+    /**
+     * Helper method that lay out a text of a book in the paint of the given view.
+     * This is on the background thread of the {@link TextLayoutCache}.
+     */
+    private void layOutText(TextLayoutView view, CharSequence text, int textAreaWidth) {
+        int textWidth = view.getTextWidth(textAreaWidth);
+        if (text != null && text.length() > 0 && textWidth > 0) {
+            mTextLayoutCache.getOrBuild(text, view.getPaint(), textWidth, view.getMaxLines());
+        }
     }
 
     /**
@@ -88,14 +266,47 @@ public class BookAdapter extends RecyclerView.Adapter<BookAdapter.MyViewHolder>
      */
     private List<Boolean> isCardExpanded = new ArrayList<>();
 
+    @Override
+    public void onAttachedToRecyclerView(RecyclerView recyclerView) {
+        super.onAttachedToRecyclerView(recyclerView);
+        mRecyclerView = recyclerView;
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(RecyclerView recyclerView) {
+        super.onDetachedFromRecyclerView(recyclerView);
+        mRecyclerView = null;
+    }
+
     /**
-     * Get the size of the list of {@link Book} object.
+     * Get the number of items, which is the size of the list of {@link Book} object,
+     * plus the header and the footer.
      * Must override this method.
      *
-     * @return the size of the list of {@link Book} object.
+     * @return the number of items.
      */
     @Override
     public int getItemCount() {
+        return HEADER_COUNT + getShownBookCount() + 1;
+    }
+
+    /**
+     * Get the size of the latest list of {@link Book} object, which is the submitted list
+     * while its diff is being computed, so that the positions given to {@link #insertAll}
+     * and {@link #removeRange} follow every change made so far.
+     *
+     * @return the size of the list of {@link Book} object.
+     */
+    public int getBookCount() {
+        return mSubmittedList != null ? mSubmittedList.size() : getShownBookCount();
+    }
+
+    /**
+     * Get the size of the list of {@link Book} object on screen.
+     *
+     * @return the size of the list of {@link Book} object on screen.
+     */
+    private int getShownBookCount() {
         int listItemCount = mBooksList.size();
         // Make sure that the CardView indicator list size will not larger than the book list itself.
         if (isCardExpanded.size() < listItemCount) {
@@ -109,6 +320,16 @@ public class BookAdapter extends RecyclerView.Adapter<BookAdapter.MyViewHolder>
         return listItemCount;
     }
 
+    @Override
+    public int getItemViewType(int position) {
+        if (position < HEADER_COUNT) {
+            return VIEW_TYPE_HEADER;
+        } else if (position >= HEADER_COUNT + mBooksList.size()) {
+            return VIEW_TYPE_FOOTER;
+        }
+        return VIEW_TYPE_BOOK;
+    }
+
     /**
      * CardView index assign by the item click listener.
      * Default value is -1, so that it can't be reach until item click event assign a new value.
@@ -118,20 +339,40 @@ public class BookAdapter extends RecyclerView.Adapter<BookAdapter.MyViewHolder>
     /**
      * Involves populating data into the item through holder.
      *
-     * @param holder   is the custom ViewHolder.
-     * @param position is the current position in RecyclerView.
+     * @param viewHolder is the ViewHolder of the item.
+     * @param position   is the current position in RecyclerView.
      */
     @Override
-    public void onBindViewHolder(final MyViewHolder holder, final int position) {
+    public void onBindViewHolder(RecyclerView.ViewHolder viewHolder, int position) {
+        // The header and the footer are updated by the activity directly.
+        if (!(viewHolder instanceof MyViewHolder)) {
+            return;
+        }
+        long startNanos = Metrics.beginPhase(Metrics.PHASE_BIND);
+        try {
+            bindBook((MyViewHolder) viewHolder, position);
+        } finally {
+            Metrics.endPhase(Metrics.PHASE_BIND, startNanos);
+        }
+    }
+
+    /**
+     * Helper method that populate the data of a book into its card.
+     *
+     * @param holder   is the ViewHolder of the card.
+     * @param position is the current position in RecyclerView.
+     */
+    private void bindBook(final MyViewHolder holder, final int position) {
         // Get the data model based on position.
-        final Book book = mBooksList.get(position);
+        final int index = position - HEADER_COUNT;
+        final Book book = mBooksList.get(index);
 
-        // Set the subtitle of the book to the TextView.
-        holder.bookSubtitleView.setText(book.getSubtitle());
-        // Set the title of the book to the TextView.
-        holder.bookTitleView.setText(book.getTitle());
-        // Set the author of the book to the TextView.
-        holder.bookAuthorView.setText(book.getAuthor());
+        // Set the subtitle of the book to the view, which draws its prefetched layout.
+        holder.bookSubtitleView.setText(book.getSubtitle(), mTextLayoutCache);
+        // Set the title of the book to the view.
+        holder.bookTitleView.setText(book.getTitle(), mTextLayoutCache);
+        // Set the author of the book to the view.
+        holder.bookAuthorView.setText(book.getAuthor(), mTextLayoutCache);
 
         // If the rate for the book is zero, which means there is no rating for the book.
         // Otherwise, set the rate for the book to the TextView.
@@ -142,10 +383,9 @@ public class BookAdapter extends RecyclerView.Adapter<BookAdapter.MyViewHolder>
                     book.getRate(), book.getMaxRating()));
         }
 
-        // If the image resource is not null. then set the image of the book to the ImageView.
-        if (book.getImageResource() != null) {
-            holder.bookImageView.setImageDrawable(book.getImageResource());
-        }
+        // Set the image of the book to the ImageView, or clear the cover of the book
+        // that the recycled view showed before.
+        holder.bookImageView.setImageDrawable(book.getImageResource());
 
         // Create an instance of RecyclerVIew OnItemClickListener.
         if (mOnItemClickListener != null) {
@@ -178,72 +418,191 @@ public class BookAdapter extends RecyclerView.Adapter<BookAdapter.MyViewHolder>
             });
         }
 
-        // Expand CardView and adjust other views here.
+        // Expand or restore the CardView that has been clicked.
+        getShownBookCount();
         if (cardViewIndex == position) {
-            // Create a LayoutParams object for CardView.
-            ViewGroup.LayoutParams cardViewLayoutParams = holder.cardView.getLayoutParams();
-            // Create a LayoutParams object for the book image.
-            ViewGroup.LayoutParams imageLayoutParams = holder.bookImageView.getLayoutParams();
-
-            // If the card is not expanded, proceed the expanding.
-            // If the card has already expanded, restore the origin layout.
-            if (isCardExpanded.get(position).equals(false)) {
-                // Make subtitle and author view gone.
-                holder.bookSubtitleView.setVisibility(View.GONE);
-                holder.bookAuthorView.setVisibility(View.GONE);
-                // Set the text for book link TextView and make it visible.
-                holder.bookLinkView.setText(R.string.learn_more);
-                holder.bookLinkView.setVisibility(View.VISIBLE);
-                // Set the text for book summary TextView and make it visible.
-                holder.bookSummaryView.setText(book.getSummary());
-                holder.bookSummaryView.setVisibility(View.VISIBLE);
-                // Expand the CardView height and width.
-                int expandedHorizontalMargin = mContext.getResources().
-                        getDimensionPixelOffset(R.dimen.card_expanded_horizontal_margin);
-                int expandedVerticalMargin = mContext.getResources().
-                        getDimensionPixelOffset(R.dimen.card_expanded_vertical_margin);
-                setMargins(holder.cardView, expandedHorizontalMargin, expandedVerticalMargin,
-                        expandedHorizontalMargin, expandedVerticalMargin);
-                cardViewLayoutParams.height = (int) mContext.getResources().
-                        getDimension(R.dimen.card_expanded_height);
-
-                // Expand the book image width.
-                imageLayoutParams.width = (int) mContext.getResources().
-                        getDimension(R.dimen.book_image_expanded_width);
-
-                // Set the corresponding position of CardView expend status to true.
-                isCardExpanded.set(position, true);
-            } else {
-                // Restore the origin layout.
-                holder.bookSubtitleView.setVisibility(View.VISIBLE);
-                holder.bookAuthorView.setVisibility(View.VISIBLE);
-                // Set the summary of the book to gone by default.
-                holder.bookSummaryView.setVisibility(View.GONE);
-                // Set the link of the book to gone by default.
-                holder.bookLinkView.setVisibility(View.GONE);
-                cardViewLayoutParams.height = (int) mContext.getResources().
-                        getDimension(R.dimen.card_height);
-                // Use the helper method to set CardView Margins.
-                // Get the origin vertical and horizontal margin of CardView.
-                int originVerticalMargin = mContext.getResources().
-                        getDimensionPixelOffset(R.dimen.card_vertical_margin);
-                int originHorizontalMargin = mContext.getResources().
-                        getDimensionPixelOffset(R.dimen.card_horizontal_margin);
-                setMargins(holder.cardView, originHorizontalMargin, originVerticalMargin,
-                        originHorizontalMargin, originVerticalMargin);
-                imageLayoutParams.width = (int) mContext.getResources().
-                        getDimension(R.dimen.book_image_width);
-
-                // Set the corresponding position of CardView expend status to false.
-                isCardExpanded.set(position, false);
+            isCardExpanded.set(index, !isCardExpanded.get(index));
+            // Try again to fetch the summary that has failed before.
+            mFailedSummaryLinks.remove(book.getLink());
+            // After dealing with the CardView, set the indicator value to -1, make it inaccessible.
+            cardViewIndex = -1;
+        }
+
+        // Remember the summary that the card was waiting for, which is let go below
+        // when the card no longer shows it.
+        String waitingSummaryLink = holder.summaryLink;
+        holder.summaryLink = null;
+
+        // Always lay out the CardView by the expand status of its own book,
+        // since a recycled view may have shown an expanded book before.
+        // Create a LayoutParams object for CardView.
+        ViewGroup.LayoutParams cardViewLayoutParams = holder.cardView.getLayoutParams();
+        // Create a LayoutParams object for the book image.
+        ViewGroup.LayoutParams imageLayoutParams = holder.bookImageView.getLayoutParams();
+        if (isCardExpanded.get(index)) {
+            // Make subtitle and author view gone.
+            holder.bookSubtitleView.setVisibility(View.GONE);
+            holder.bookAuthorView.setVisibility(View.GONE);
+            // Set the text for book link TextView and make it visible.
+            holder.bookLinkView.setText(R.string.learn_more);
+            holder.bookLinkView.setVisibility(View.VISIBLE);
+            // Set the text for book summary view and make it visible. Its layout has been
+            // built in the expanded width on a background thread.
+            holder.bookSummaryView.setText(getSummaryText(holder, book), mTextLayoutCache);
+            holder.bookSummaryView.setVisibility(View.VISIBLE);
+            // Expand the CardView height and width.
+            int expandedHorizontalMargin = mContext.getResources().
+                    getDimensionPixelOffset(R.dimen.card_expanded_horizontal_margin);
+            int expandedVerticalMargin = mContext.getResources().
+                    getDimensionPixelOffset(R.dimen.card_expanded_vertical_margin);
+            setMargins(holder.cardView, expandedHorizontalMargin, expandedVerticalMargin,
+                    expandedHorizontalMargin, expandedVerticalMargin);
+            cardViewLayoutParams.height = (int) mContext.getResources().
+                    getDimension(R.dimen.card_expanded_height);
+
+            // Expand the book image width.
+            imageLayoutParams.width = (int) mContext.getResources().
+                    getDimension(R.dimen.book_image_expanded_width);
+        } else {
+            // Restore the origin layout.
+            holder.bookSubtitleView.setVisibility(View.VISIBLE);
+            holder.bookAuthorView.setVisibility(View.VISIBLE);
+            // Set the summary of the book to gone by default.
+            holder.bookSummaryView.setVisibility(View.GONE);
+            // Set the link of the book to gone by default.
+            holder.bookLinkView.setVisibility(View.GONE);
+            cardViewLayoutParams.height = (int) mContext.getResources().
+                    getDimension(R.dimen.card_height);
+            // Use the helper method to set CardView Margins.
+            // Get the origin vertical and horizontal margin of CardView.
+            int originVerticalMargin = mContext.getResources().
+                    getDimensionPixelOffset(R.dimen.card_vertical_margin);
+            int originHorizontalMargin = mContext.getResources().
+                    getDimensionPixelOffset(R.dimen.card_horizontal_margin);
+            setMargins(holder.cardView, originHorizontalMargin, originVerticalMargin,
+                    originHorizontalMargin, originVerticalMargin);
+            imageLayoutParams.width = (int) mContext.getResources().
+                    getDimension(R.dimen.book_image_width);
+        }
+
+        // Set the layout params to the views.
+        holder.cardView.setLayoutParams(cardViewLayoutParams);
+        holder.bookImageView.setLayoutParams(imageLayoutParams);
+
+        // Let go of the summary that the card no longer waits for, such as when it has been
+        // collapsed, or when it shows another book.
+        if (waitingSummaryLink != null && !waitingSummaryLink.equals(holder.summaryLink)) {
+            releaseSummary(waitingSummaryLink);
+        }
+    }
+
+    /**
+     * Helper method that return the summary of the book, or a placeholder while it is
+     * being fetched on its own, since a search does not return the summaries.
+     * The card then waits for the summary until it is bound again or recycled.
+     */
+    private String getSummaryText(MyViewHolder holder, Book book) {
+        String summary = book.getSummary();
+        if (summary == null) {
+            summary = mSummaryFetcher.get(book.getLink());
+        }
+        if (summary != null) {
+            return summary;
+        } else if (mFailedSummaryLinks.contains(book.getLink())) {
+            return mContext.getString(R.string.summary_unavailable);
+        }
+        mSummaryFetcher.fetch(book.getLink(), mSummaryFetchedListener);
+        holder.summaryLink = book.getLink();
+        return mContext.getString(R.string.loading_summary);
+    }
+
+    @Override
+    public void onViewRecycled(RecyclerView.ViewHolder viewHolder) {
+        if (viewHolder instanceof MyViewHolder) {
+            MyViewHolder holder = (MyViewHolder) viewHolder;
+            String waitingSummaryLink = holder.summaryLink;
+            holder.summaryLink = null;
+            // The card that waited for the summary has scrolled away.
+            releaseSummary(waitingSummaryLink);
+        }
+    }
+
+    /**
+     * Helper method that cancel the fetch of the summary of the given link,
+     * unless another card on screen still waits for it.
+     *
+     * @param link is the link of the book, which may be null.
+     */
+    private void releaseSummary(String link) {
+        if (link == null) {
+            return;
+        }
+        if (mRecyclerView != null) {
+            for (int index = 0; index < mRecyclerView.getChildCount(); index++) {
+                RecyclerView.ViewHolder viewHolder =
+                        mRecyclerView.getChildViewHolder(mRecyclerView.getChildAt(index));
+                if (viewHolder instanceof MyViewHolder
+                        && link.equals(((MyViewHolder) viewHolder).summaryLink)) {
+                    return;
+                }
             }
+        }
+        mSummaryFetcher.cancel(link, mSummaryFetchedListener);
+    }
 
-            // Set the layout params to the views.
-            holder.cardView.setLayoutParams(cardViewLayoutParams);
-            holder.bookImageView.setLayoutParams(imageLayoutParams);
+    /**
+     * Listener of the summaries that have been fetched. A summary is laid out on the
+     * background thread of the {@link TextLayoutCache}, then its expanded card is bound again.
+     */
+    private final SummaryFetcher.OnSummaryFetchedListener mSummaryFetchedListener =
+            new SummaryFetcher.OnSummaryFetchedListener() {
+                @Override
+                public void onSummaryFetched(final String link, final String summary) {
+                    if (summary == null) {
+                        mFailedSummaryLinks.add(link);
+                        notifySummaryChanged(link);
+                        return;
+                    }
+                    if (mTemplateHolder == null) {
+                        notifySummaryChanged(link);
+                        return;
+                    }
+                    final MyViewHolder template = mTemplateHolder;
+                    final int expandedWidth = mExpandedTextAreaWidth;
+                    TextLayoutCache.runInBackground(new Runnable() {
+                        @Override
+                        public void run() {
+                            layOutText(template.bookSummaryView, summary, expandedWidth);
+                            mMainHandler.post(new Runnable() {
+                                @Override
+                                public void run() {
+                                    notifySummaryChanged(link);
+                                }
+                            });
+                        }
+                    });
+                }
+            };
 
-            // After dealing with the CardView, set the indicator value to -1, make it inaccessible.
-            cardViewIndex = -1;
+    /**
+     * Helper method that notify {@link RecyclerView} of the expanded cards of the book
+     * whose summary has changed.
+     */
+    private void notifySummaryChanged(String link) {
+        getShownBookCount();
+        for (int index = 0; index < mBooksList.size(); index++) {
+            if (isCardExpanded.get(index) && link.equals(mBooksList.get(index).getLink())) {
+                notifyItemChanged(HEADER_COUNT + index);
+            }
+        }
+    }
+
+    /**
+     * The ViewHolder of the header and the footer, which only holds their single view.
+     */
+    private static class HeaderFooterViewHolder extends RecyclerView.ViewHolder {
+        HeaderFooterViewHolder(View view) {
+            super(view);
         }
     }
 
@@ -255,10 +614,15 @@ public class BookAdapter extends RecyclerView.Adapter<BookAdapter.MyViewHolder>
         // The holder should contain a member variable
         // for any view that will be set as you render a row.
         public CardView cardView;
-        public TextView bookSubtitleView, bookTitleView, bookAuthorView,
-                bookSummaryView, bookLinkView, bookRateView;
+        public TextLayoutView bookSubtitleView, bookTitleView, bookAuthorView, bookSummaryView;
+        public TextView bookLinkView, bookRateView;
         public ImageView bookImageView;
 
+        /**
+         * Link of the book whose summary the card waits for, or null if it waits for none.
+         */
+        String summaryLink;
+
         // Create a constructor that accepts the entire item row
         // and does the view lookups to find each subview.
         public MyViewHolder(View view) {
@@ -282,8 +646,7 @@ public class BookAdapter extends RecyclerView.Adapter<BookAdapter.MyViewHolder>
      * Helper method that clear the list of {@link RecyclerView} and notify it of the removal.
      */
     public void clear() {
-        mBooksList.clear();
-        notifyDataSetChanged();
+        submitList(new ArrayList<Book>());
     }
 
     /**
@@ -292,21 +655,357 @@ public class BookAdapter extends RecyclerView.Adapter<BookAdapter.MyViewHolder>
      * @param books is a reference of the {@link List<Book>}.
      */
     public void addAll(List<Book> books) {
+        insertAll(mBooksList.size(), books);
+    }
+
+    /**
+     * Helper method that replace the list of {@link RecyclerView} with the given books.
+     * The diff between the two lists is computed on a background thread, and only the inserted,
+     * removed, moved and changed books are notified, so that an unchanged page costs nothing.
+     * Books that have not changed are kept as they are, along with their covers.
+     *
+     * @param books is a reference of the {@link List<Book>}.
+     */
+    public void submitList(List<Book> books) {
+        final List<Book> newList = new ArrayList<>(books);
+        prefetchTextLayouts(newList);
+        mSubmittedList = newList;
+        if (mBooksList.isEmpty() || newList.isEmpty()) {
+            // There is nothing to compare, so insert or remove everything at once.
+            replaceList(newList, null);
+            return;
+        }
+
+        final List<Book> oldList = new ArrayList<>(mBooksList);
+        final int listVersion = mListVersion;
+        DIFF_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                final List<Book> reusedList = reuseUnchangedBooks(oldList, newList);
+                final DiffUtil.DiffResult diffResult =
+                        DiffUtil.calculateDiff(new BookDiffCallback(oldList, reusedList));
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (mSubmittedList != newList) {
+                            // A newer list has been submitted.
+                            return;
+                        }
+                        if (mListVersion != listVersion) {
+                            // The list on screen has changed since the diff started,
+                            // so diff it again.
+                            submitList(newList);
+                            return;
+                        }
+                        replaceList(reusedList, diffResult);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Helper method that replace the book list, keep the expand status of the books that
+     * are still in it, and notify {@link RecyclerView} of the diff, or of the whole range
+     * when there is no diff.
+     */
+    private void replaceList(List<Book> books, DiffUtil.DiffResult diffResult) {
+        mSubmittedList = null;
+        // Remember which books are expanded, by their identity.
+        getShownBookCount();
+        Map<String, Boolean> expandedBooks = new HashMap<>();
+        for (int index = 0; index < mBooksList.size(); index++) {
+            if (isCardExpanded.get(index)) {
+                expandedBooks.put(identityOf(mBooksList.get(index)), true);
+            }
+        }
+
+        int oldSize = mBooksList.size();
+        mBooksList.clear();
         mBooksList.addAll(books);
-        notifyDataSetChanged();
+        isCardExpanded.clear();
+        for (Book book : books) {
+            isCardExpanded.add(expandedBooks.containsKey(identityOf(book)));
+        }
+        mListVersion++;
+
+        if (diffResult != null) {
+            diffResult.dispatchUpdatesTo(mBookUpdateCallback);
+        } else if (books.isEmpty()) {
+            notifyItemRangeRemoved(HEADER_COUNT, oldSize);
+        } else {
+            notifyItemRangeInserted(HEADER_COUNT, books.size());
+        }
+        // Apply the covers that have arrived while the diff was being computed.
+        applyPendingImages();
+    }
+
+    /**
+     * {@link ListUpdateCallback} that dispatches the diff of the books to {@link RecyclerView},
+     * shifted past the header.
+     */
+    private final ListUpdateCallback mBookUpdateCallback = new ListUpdateCallback() {
+        @Override
+        public void onInserted(int position, int count) {
+            notifyItemRangeInserted(HEADER_COUNT + position, count);
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            notifyItemRangeRemoved(HEADER_COUNT + position, count);
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+            notifyItemMoved(HEADER_COUNT + fromPosition, HEADER_COUNT + toPosition);
+        }
+
+        @Override
+        public void onChanged(int position, int count, Object payload) {
+            notifyItemRangeChanged(HEADER_COUNT + position, count, payload);
+        }
+    };
+
+    /**
+     * Return the new list, where every book that has not changed is replaced by the old one,
+     * and where a changed book takes over the cover of the old one, if it is the same cover.
+     */
+    private static List<Book> reuseUnchangedBooks(List<Book> oldList, List<Book> newList) {
+        Map<String, Book> oldBooks = new HashMap<>();
+        for (Book book : oldList) {
+            oldBooks.put(identityOf(book), book);
+        }
+        List<Book> reusedList = new ArrayList<>();
+        for (Book book : newList) {
+            Book oldBook = oldBooks.get(identityOf(book));
+            if (oldBook != null && hasSameContent(oldBook, book)) {
+                reusedList.add(oldBook);
+            } else {
+                if (oldBook != null && book.getImageResource() == null
+                        && equal(oldBook.getImageUrl(), book.getImageUrl())) {
+                    book.setImageResource(oldBook.getImageResource());
+                }
+                reusedList.add(book);
+            }
+        }
+        return reusedList;
+    }
+
+    /**
+     * Return the stable identity of the book, which is its Douban link.
+     */
+    private static String identityOf(Book book) {
+        return book.getLink() != null ? book.getLink() : String.valueOf(book.getTitle());
+    }
+
+    /**
+     * Return whether the two books show the same text, rating and cover URL.
+     */
+    private static boolean hasSameContent(Book oldBook, Book newBook) {
+        // The subtitle and the summary are compared without decoding them.
+        return equal(oldBook.getTitle(), newBook.getTitle())
+                && equal(oldBook.getAuthor(), newBook.getAuthor())
+                && oldBook.hasSameCompactText(newBook)
+                && equal(oldBook.getLink(), newBook.getLink())
+                && oldBook.getRate() == newBook.getRate()
+                && oldBook.getMaxRating() == newBook.getMaxRating()
+                && equal(oldBook.getImageUrl(), newBook.getImageUrl());
+    }
+
+    /**
+     * Helper method that compare two strings that may be null.
+     */
+    private static boolean equal(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    /**
+     * {@link DiffUtil.Callback} that matches the books by their identity,
+     * and their content by their fields and cover.
+     */
+    private static final class BookDiffCallback extends DiffUtil.Callback {
+
+        private final List<Book> mOldList;
+        private final List<Book> mNewList;
+
+        BookDiffCallback(List<Book> oldList, List<Book> newList) {
+            mOldList = oldList;
+            mNewList = newList;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return mOldList.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return mNewList.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            return identityOf(mOldList.get(oldItemPosition))
+                    .equals(identityOf(mNewList.get(newItemPosition)));
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            Book oldBook = mOldList.get(oldItemPosition);
+            Book newBook = mNewList.get(newItemPosition);
+            // A reused book is the same object, which keeps its cover.
+            return oldBook == newBook || (hasSameContent(oldBook, newBook)
+                    && oldBook.getImageResource() == newBook.getImageResource());
+        }
+    }
+
+    /**
+     * Helper method that insert the books at the given position and notify {@link RecyclerView}
+     * of the inserted range only.
+     *
+     * @param position is the position to insert the books at.
+     * @param books    is a reference of the {@link List<Book>}.
+     */
+    public void insertAll(int position, List<Book> books) {
+        if (mSubmittedList != null) {
+            // Insert the books into the submitted list instead, whose diff is computed again,
+            // since the list on screen is about to be replaced by it.
+            List<Book> submittedList = new ArrayList<>(mSubmittedList);
+            submittedList.addAll(position, books);
+            submitList(submittedList);
+            return;
+        }
+        prefetchTextLayouts(books);
+        // Keep the CardView expand status aligned with the books.
+        getShownBookCount();
+        mBooksList.addAll(position, books);
+        isCardExpanded.addAll(position, Collections.nCopies(books.size(), false));
+        mListVersion++;
+        notifyItemRangeInserted(HEADER_COUNT + position, books.size());
+    }
+
+    /**
+     * Helper method that remove a range of books and notify {@link RecyclerView}
+     * of the removed range only.
+     *
+     * @param position is the position of the first book to remove.
+     * @param count    is the number of books to remove.
+     */
+    public void removeRange(int position, int count) {
+        if (count <= 0) {
+            return;
+        }
+        if (mSubmittedList != null) {
+            // Remove the books from the submitted list instead, whose diff is computed again,
+            // since the list on screen is about to be replaced by it.
+            List<Book> submittedList = new ArrayList<>(mSubmittedList);
+            submittedList.subList(position, position + count).clear();
+            submitList(submittedList);
+            return;
+        }
+        // Keep the CardView expand status aligned with the books.
+        getShownBookCount();
+        mBooksList.subList(position, position + count).clear();
+        isCardExpanded.subList(position, position + count).clear();
+        mListVersion++;
+        notifyItemRangeRemoved(HEADER_COUNT + position, count);
+    }
+
+    /**
+     * Helper method that set the image of the books with the given image url string.
+     * Covers that arrive in the same frame are merged into one pass of item change notification.
+     *
+     * @param imageUrl is the image url string of the cover.
+     * @param drawable is the drawable resource of the cover.
+     */
+    public void setImage(String imageUrl, Drawable drawable) {
+        if (imageUrl == null || drawable == null) {
+            return;
+        }
+        mPendingImages.put(imageUrl, drawable);
+        if (mImageUpdateScheduled) {
+            return;
+        }
+        if (mRecyclerView == null) {
+            applyPendingImages();
+        } else {
+            mImageUpdateScheduled = true;
+            ViewCompat.postOnAnimation(mRecyclerView, new Runnable() {
+                @Override
+                public void run() {
+                    applyPendingImages();
+                }
+            });
+        }
     }
 
     /**
-     * Helper method that set images of books and notify {@link RecyclerView} of the item change.
+     * Helper method that set the images of the books that do not have one yet,
+     * such as when the covers could not be delivered one by one.
      *
-     * @param drawables is a list of the drawable resource of the image.
+     * @param imageUrls is a list of the image url string of the covers.
+     * @param drawables is a list of the drawable resource of the covers, in the same order.
+     */
+    public void setImages(List<String> imageUrls, List<Drawable> drawables) {
+        if (imageUrls == null || drawables == null) {
+            return;
+        }
+        for (int index = 0; index < imageUrls.size() && index < drawables.size(); index++) {
+            String imageUrl = imageUrls.get(index);
+            if (imageUrl != null && !mPendingImages.containsKey(imageUrl)
+                    && !hasImage(imageUrl)) {
+                setImage(imageUrl, drawables.get(index));
+            }
+        }
+    }
+
+    /**
+     * Helper method that tells whether every book with the given image url string has its image.
+     */
+    private boolean hasImage(String imageUrl) {
+        for (Book book : mBooksList) {
+            if (imageUrl.equals(book.getImageUrl()) && book.getImageResource() == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Helper method that set the pending covers to their books,
+     * and notify {@link RecyclerView} of the changed items in as few ranges as possible.
      */
-    public void setImage(List<Drawable> drawables) {
-        if (drawables != null && !drawables.isEmpty()) {
-            for (int index = 0; index < drawables.size(); index++) {
-                mBooksList.get(index).setImageResource(drawables.get(index));
-                notifyItemChanged(index);
+    private void applyPendingImages() {
+        mImageUpdateScheduled = false;
+        if (mPendingImages.isEmpty() || mSubmittedList != null) {
+            // The covers of a submitted list are applied once its diff has been dispatched.
+            return;
+        }
+
+        // Find the books of the pending covers, by their image url string.
+        List<Integer> changedPositions = new ArrayList<>();
+        for (int index = 0; index < mBooksList.size(); index++) {
+            Book book = mBooksList.get(index);
+            Drawable drawable = mPendingImages.get(book.getImageUrl());
+            if (drawable != null) {
+                book.setImageResource(drawable);
+                changedPositions.add(index);
+            }
+        }
+        mPendingImages.clear();
+
+        // Notify the changed positions, merging the adjacent ones into ranges.
+        Collections.sort(changedPositions);
+        int index = 0;
+        while (index < changedPositions.size()) {
+            int rangeStart = changedPositions.get(index);
+            int rangeCount = 1;
+            while (index + rangeCount < changedPositions.size()
+                    && changedPositions.get(index + rangeCount) == rangeStart + rangeCount) {
+                rangeCount++;
             }
+            notifyItemRangeChanged(HEADER_COUNT + rangeStart, rangeCount);
+            index += rangeCount;
         }
     }
 
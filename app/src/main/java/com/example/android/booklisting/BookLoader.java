@@ -3,28 +3,47 @@ package com.example.android.booklisting;
 import android.content.AsyncTaskLoader;
 import android.content.Context;
 
-import java.util.List;
-
 /**
  * Loads a list of books by using an AsyncTask to perform the
- * network request to the given URL.
+ * network request for the given page of the search result.
+ * The page is answered by the {@link SearchEngine} as an immutable {@link SearchResult}.
  */
-public class BookLoader extends AsyncTaskLoader<List<Book>> {
+public class BookLoader extends AsyncTaskLoader<SearchResult> {
 
     /**
-     * Query URL.
+     * Request keywords.
      */
-    private String mUrl;
+    private String mKeywords;
+
+    /**
+     * Result offset and the number of books of the page.
+     */
+    private int mStart, mCount;
+
+    /**
+     * Search engine that answers the page.
+     */
+    private SearchEngine mSearchEngine;
+
+    /**
+     * Cancellation token of the running load, which aborts its connection and parsing.
+     */
+    private volatile CancellationToken mCancellationToken;
 
     /**
      * Constructs a new {@link BookLoader}.
      *
-     * @param context of the activity.
-     * @param url     to load data from.
+     * @param context  of the activity.
+     * @param keywords to search for.
+     * @param start    is the result offset of the page.
+     * @param count    is the number of books per request.
      */
-    public BookLoader(Context context, String url) {
+    public BookLoader(Context context, String keywords, int start, int count) {
         super(context);
-        mUrl = url;
+        mKeywords = keywords;
+        mStart = start;
+        mCount = count;
+        mSearchEngine = new SearchEngine(context);
     }
 
     /**
@@ -40,12 +59,31 @@ public class BookLoader extends AsyncTaskLoader<List<Book>> {
      * This is on a background thread.
      */
     @Override
-    public List<Book> loadInBackground() {
-        if (mUrl == null) {
+    public SearchResult loadInBackground() {
+        if (mKeywords == null) {
             return null;
         }
 
-        // Perform the network request, parse the response, extract a list of books, and return.
-        return QueryUtils.fetchBookData(mUrl);
+        // Perform the request through the search engine, and return its immutable result.
+        CancellationToken token = new CancellationToken();
+        mCancellationToken = token;
+        long startNanos = Metrics.beginPhase(Metrics.PHASE_SEARCH);
+        try {
+            return mSearchEngine.search(mKeywords, mStart, mCount, token);
+        } finally {
+            Metrics.endPhase(Metrics.PHASE_SEARCH, startNanos);
+        }
+    }
+
+    /**
+     * This is on the main thread, when the load has been superseded, such as by restartLoader.
+     * Abort the connection and the parsing at once, so that the thread is freed.
+     */
+    @Override
+    public void cancelLoadInBackground() {
+        CancellationToken token = mCancellationToken;
+        if (token != null) {
+            token.cancel();
+        }
     }
 }
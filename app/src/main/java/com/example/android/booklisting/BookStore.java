@@ -0,0 +1,446 @@
+package com.example.android.booklisting;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A persistent store of every book that has been fetched, so that a search can still be
+ * answered when the device is offline, or when the request fails.
+ * <p>
+ * The books are kept in a plain table, keyed by their link, and their text is indexed
+ * by an FTS4 table whose docid is the row id of the book. Books that have not been fetched
+ * for a long time, or that do not fit the max row count, are pruned after every write.
+ */
+public class BookStore extends SQLiteOpenHelper {
+
+    /**
+     * Tag for the log messages.
+     */
+    private static final String LOG_TAG = BookStore.class.getSimpleName();
+
+    /**
+     * Name and version of the database file.
+     */
+    private static final String DATABASE_NAME = "books.db";
+    private static final int DATABASE_VERSION = 1;
+
+    /**
+     * Max number of books that are kept.
+     */
+    private static final int MAX_ROWS = 2000;
+
+    /**
+     * Time in milliseconds after which a book that has not been fetched again is pruned.
+     */
+    private static final long MAX_AGE_MILLIS = 30L * 24 * 60 * 60 * 1000;
+
+    /**
+     * Names of the tables.
+     */
+    private static final String TABLE_BOOKS = "books";
+    private static final String TABLE_FTS = "books_fts";
+
+    /**
+     * Names of the columns of the book table.
+     */
+    private static final String COLUMN_ID = "_id";
+    private static final String COLUMN_LINK = "link";
+    private static final String COLUMN_TITLE = "title";
+    private static final String COLUMN_SUBTITLE = "subtitle";
+    private static final String COLUMN_AUTHOR = "author";
+    private static final String COLUMN_SUMMARY = "summary";
+    private static final String COLUMN_RATE = "rate";
+    private static final String COLUMN_MAX_RATING = "max_rating";
+    private static final String COLUMN_IMAGE_URL = "image_url";
+    private static final String COLUMN_UPDATED_AT = "updated_at";
+
+    /**
+     * Columns that are read back into a {@link Book}.
+     */
+    private static final String BOOK_COLUMNS = TABLE_BOOKS + "." + COLUMN_SUBTITLE + ", "
+            + TABLE_BOOKS + "." + COLUMN_TITLE + ", " + TABLE_BOOKS + "." + COLUMN_AUTHOR + ", "
+            + TABLE_BOOKS + "." + COLUMN_SUMMARY + ", " + TABLE_BOOKS + "." + COLUMN_LINK + ", "
+            + TABLE_BOOKS + "." + COLUMN_RATE + ", " + TABLE_BOOKS + "." + COLUMN_MAX_RATING + ", "
+            + TABLE_BOOKS + "." + COLUMN_IMAGE_URL;
+
+    /**
+     * The single instance shared by every loader of the process.
+     */
+    private static BookStore sInstance;
+
+    /**
+     * Create a new {@link BookStore} object.
+     */
+    private BookStore(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    }
+
+    /**
+     * Return the shared {@link BookStore}.
+     *
+     * @param context is any context of the application.
+     */
+    public static synchronized BookStore getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new BookStore(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_BOOKS + " ("
+                + COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + COLUMN_LINK + " TEXT NOT NULL UNIQUE, "
+                + COLUMN_TITLE + " TEXT, "
+                + COLUMN_SUBTITLE + " TEXT, "
+                + COLUMN_AUTHOR + " TEXT, "
+                + COLUMN_SUMMARY + " TEXT, "
+                + COLUMN_RATE + " REAL, "
+                + COLUMN_MAX_RATING + " INTEGER, "
+                + COLUMN_IMAGE_URL + " TEXT, "
+                + COLUMN_UPDATED_AT + " INTEGER NOT NULL)");
+        db.execSQL("CREATE INDEX " + TABLE_BOOKS + "_" + COLUMN_UPDATED_AT
+                + " ON " + TABLE_BOOKS + " (" + COLUMN_UPDATED_AT + ")");
+        // The indexed text is normalized, so that it matches the normalized keywords.
+        db.execSQL("CREATE VIRTUAL TABLE " + TABLE_FTS + " USING fts4("
+                + COLUMN_TITLE + ", " + COLUMN_SUBTITLE + ", "
+                + COLUMN_AUTHOR + ", " + COLUMN_SUMMARY + ")");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // The store only holds copies of the fetched books, so simply start over.
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_FTS);
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_BOOKS);
+        onCreate(db);
+    }
+
+    /**
+     * Insert the books, or update them if they are already stored,
+     * and prune the books that are too old or do not fit.
+     * This is on a background thread.
+     *
+     * @param books is the books of a fetched page.
+     */
+    public void putAll(List<Book> books) {
+        if (books == null || books.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        try {
+            SQLiteDatabase db = getWritableDatabase();
+            db.beginTransaction();
+            try {
+                for (Book book : books) {
+                    put(db, book, now);
+                }
+                prune(db, now);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        } catch (SQLiteException e) {
+            Log.e(LOG_TAG, "Problem storing the books.", e);
+        }
+    }
+
+    /**
+     * Return the stored books that match the keywords, most recently fetched first.
+     * This is on a background thread.
+     *
+     * @param keywords is the keywords that users input.
+     * @param start    is the result offset of the page.
+     * @param count    is the number of books per request.
+     * @return the books of the page, or null if the store can not be read.
+     */
+    public List<Book> search(String keywords, int start, int count) {
+        try {
+            SQLiteDatabase db = getReadableDatabase();
+            String match = buildMatchQuery(keywords);
+            if (match == null) {
+                return new ArrayList<>();
+            }
+            if (hasTextMatch(db, match)) {
+                return readBooks(db.rawQuery("SELECT " + BOOK_COLUMNS
+                        + " FROM " + TABLE_BOOKS + " JOIN " + TABLE_FTS
+                        + " ON " + TABLE_BOOKS + "." + COLUMN_ID + " = " + TABLE_FTS + ".docid"
+                        + " WHERE " + TABLE_FTS + " MATCH ?"
+                        + " ORDER BY " + TABLE_BOOKS + "." + COLUMN_UPDATED_AT + " DESC"
+                        + " LIMIT " + count + " OFFSET " + start, new String[]{match}));
+            }
+            // The default tokenizer does not split CJK text into words,
+            // so fall back to a substring search of the titles and authors.
+            return readBooks(db.rawQuery("SELECT " + BOOK_COLUMNS
+                    + " FROM " + TABLE_BOOKS + " WHERE " + buildLikeClause(keywords)
+                    + " ORDER BY " + COLUMN_UPDATED_AT + " DESC"
+                    + " LIMIT " + count + " OFFSET " + start, buildLikeArgs(keywords)));
+        } catch (SQLiteException e) {
+            Log.e(LOG_TAG, "Problem searching the stored books.", e);
+            return null;
+        }
+    }
+
+    /**
+     * Return the number of stored books that match the keywords, in the same way as
+     * {@link #search(String, int, int)}.
+     * This is on a background thread.
+     */
+    public int count(String keywords) {
+        try {
+            SQLiteDatabase db = getReadableDatabase();
+            String match = buildMatchQuery(keywords);
+            if (match == null) {
+                return 0;
+            }
+            if (hasTextMatch(db, match)) {
+                return readCount(db.rawQuery("SELECT COUNT(*) FROM " + TABLE_FTS
+                        + " WHERE " + TABLE_FTS + " MATCH ?", new String[]{match}));
+            }
+            return readCount(db.rawQuery("SELECT COUNT(*) FROM " + TABLE_BOOKS
+                    + " WHERE " + buildLikeClause(keywords), buildLikeArgs(keywords)));
+        } catch (SQLiteException e) {
+            Log.e(LOG_TAG, "Problem counting the stored books.", e);
+            return 0;
+        }
+    }
+
+    /**
+     * Helper method that insert or update a book and its text index.
+     */
+    private static void put(SQLiteDatabase db, Book book, long now) {
+        if (book.getLink() == null || book.getLink().isEmpty()) {
+            return;
+        }
+        // A book of a search has no summary, since it is fetched on its own,
+        // so keep the summary that has been stored before.
+        String summary = book.peekSummary();
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_LINK, book.getLink());
+        values.put(COLUMN_TITLE, book.getTitle());
+        values.put(COLUMN_SUBTITLE, book.peekSubtitle());
+        values.put(COLUMN_AUTHOR, book.getAuthor());
+        if (summary != null) {
+            values.put(COLUMN_SUMMARY, summary);
+        }
+        values.put(COLUMN_RATE, book.getRate());
+        values.put(COLUMN_MAX_RATING, book.getMaxRating());
+        values.put(COLUMN_IMAGE_URL, book.getImageUrl());
+        values.put(COLUMN_UPDATED_AT, now);
+
+        long id = readId(db, book.getLink());
+        if (id == -1) {
+            id = db.insert(TABLE_BOOKS, null, values);
+            if (id == -1) {
+                return;
+            }
+        } else {
+            if (summary == null) {
+                summary = readSummary(db, id);
+            }
+            db.update(TABLE_BOOKS, values, COLUMN_ID + " = " + id, null);
+            db.delete(TABLE_FTS, "docid = " + id, null);
+        }
+
+        ContentValues text = new ContentValues();
+        text.put("docid", id);
+        text.put(COLUMN_TITLE, SearchCache.normalize(book.getTitle()));
+        text.put(COLUMN_SUBTITLE, SearchCache.normalize(book.peekSubtitle()));
+        text.put(COLUMN_AUTHOR, SearchCache.normalize(book.getAuthor()));
+        text.put(COLUMN_SUMMARY, SearchCache.normalize(summary));
+        db.insert(TABLE_FTS, null, text);
+    }
+
+    /**
+     * Return the stored summary of the book of the given link, or null if it is not stored.
+     * This is on a background thread.
+     *
+     * @param link is the link of the book.
+     */
+    public String getSummary(String link) {
+        try {
+            SQLiteDatabase db = getReadableDatabase();
+            long id = readId(db, link);
+            return id == -1 ? null : readSummary(db, id);
+        } catch (SQLiteException e) {
+            Log.e(LOG_TAG, "Problem reading the stored summary.", e);
+            return null;
+        }
+    }
+
+    /**
+     * Store the summary of the book of the given link, which has been fetched on its own,
+     * and add it to the text index. Nothing is stored if the book is not stored.
+     * This is on a background thread.
+     *
+     * @param link    is the link of the book.
+     * @param summary is the summary of the book.
+     */
+    public void putSummary(String link, String summary) {
+        try {
+            SQLiteDatabase db = getWritableDatabase();
+            long id = readId(db, link);
+            if (id == -1) {
+                return;
+            }
+            ContentValues values = new ContentValues();
+            values.put(COLUMN_SUMMARY, summary);
+            db.update(TABLE_BOOKS, values, COLUMN_ID + " = " + id, null);
+            ContentValues text = new ContentValues();
+            text.put(COLUMN_SUMMARY, SearchCache.normalize(summary));
+            db.update(TABLE_FTS, text, "docid = " + id, null);
+        } catch (SQLiteException e) {
+            Log.e(LOG_TAG, "Problem storing the summary.", e);
+        }
+    }
+
+    /**
+     * Helper method that delete the books that are too old, then the least recently fetched
+     * books that do not fit, along with their text index.
+     */
+    private static void prune(SQLiteDatabase db, long now) {
+        int deleted = db.delete(TABLE_BOOKS,
+                COLUMN_UPDATED_AT + " < " + (now - MAX_AGE_MILLIS), null);
+        deleted += db.delete(TABLE_BOOKS, COLUMN_ID + " IN (SELECT " + COLUMN_ID
+                + " FROM " + TABLE_BOOKS + " ORDER BY " + COLUMN_UPDATED_AT + " DESC"
+                + " LIMIT -1 OFFSET " + MAX_ROWS + ")", null);
+        if (deleted > 0) {
+            db.delete(TABLE_FTS, "docid NOT IN (SELECT " + COLUMN_ID
+                    + " FROM " + TABLE_BOOKS + ")", null);
+        }
+    }
+
+    /**
+     * Return the row id of the book of the given link, or -1 if it is not stored.
+     */
+    private static long readId(SQLiteDatabase db, String link) {
+        Cursor cursor = db.query(TABLE_BOOKS, new String[]{COLUMN_ID},
+                COLUMN_LINK + " = ?", new String[]{link}, null, null, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : -1;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Return the summary of the book of the given row id, or null if it has none.
+     */
+    private static String readSummary(SQLiteDatabase db, long id) {
+        Cursor cursor = db.query(TABLE_BOOKS, new String[]{COLUMN_SUMMARY},
+                COLUMN_ID + " = " + id, null, null, null, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getString(0) : null;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Return whether the text index has any book that matches the FTS query.
+     */
+    private static boolean hasTextMatch(SQLiteDatabase db, String match) {
+        return readCount(db.rawQuery("SELECT COUNT(*) FROM (SELECT docid FROM " + TABLE_FTS
+                + " WHERE " + TABLE_FTS + " MATCH ? LIMIT 1)", new String[]{match})) > 0;
+    }
+
+    /**
+     * Read the books from the cursor, and close it.
+     */
+    private static List<Book> readBooks(Cursor cursor) {
+        List<Book> books = new ArrayList<>();
+        // Keep the subtitles and the summaries encoded, as the books read from Internet.
+        CompactText.Buffer textBuffer = new CompactText.Buffer();
+        try {
+            while (cursor.moveToNext()) {
+                books.add(new Book(textBuffer.add(cursor.getString(0)), cursor.getString(1),
+                        cursor.getString(2), textBuffer.add(cursor.getString(3)),
+                        cursor.getString(4), cursor.getDouble(5), cursor.getInt(6),
+                        cursor.getString(7), null));
+            }
+        } finally {
+            cursor.close();
+        }
+        textBuffer.finish();
+        return books;
+    }
+
+    /**
+     * Read the count from the cursor, and close it.
+     */
+    private static int readCount(Cursor cursor) {
+        try {
+            return cursor.moveToFirst() ? cursor.getInt(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Return the FTS query that matches every word of the keywords as a prefix,
+     * or null if there is no word.
+     */
+    private static String buildMatchQuery(String keywords) {
+        StringBuilder match = new StringBuilder();
+        for (String word : splitWords(keywords)) {
+            if (match.length() > 0) {
+                match.append(' ');
+            }
+            match.append('"').append(word).append("\"*");
+        }
+        return match.length() == 0 ? null : match.toString();
+    }
+
+    /**
+     * Return the WHERE clause that matches every word of the keywords in the title or author.
+     */
+    private static String buildLikeClause(String keywords) {
+        StringBuilder clause = new StringBuilder();
+        int wordCount = splitWords(keywords).size();
+        for (int i = 0; i < wordCount; i++) {
+            if (i > 0) {
+                clause.append(" AND ");
+            }
+            clause.append("(").append(COLUMN_TITLE).append(" LIKE ? OR ")
+                    .append(COLUMN_AUTHOR).append(" LIKE ?)");
+        }
+        return clause.length() == 0 ? "0" : clause.toString();
+    }
+
+    /**
+     * Return the arguments of {@link #buildLikeClause(String)}.
+     */
+    private static String[] buildLikeArgs(String keywords) {
+        List<String> words = splitWords(keywords);
+        String[] args = new String[words.size() * 2];
+        for (int i = 0; i < words.size(); i++) {
+            args[i * 2] = "%" + words.get(i) + "%";
+            args[i * 2 + 1] = "%" + words.get(i) + "%";
+        }
+        return args;
+    }
+
+    /**
+     * Split the normalized keywords into words, without the characters that have
+     * a meaning in the FTS or LIKE syntax.
+     */
+    private static List<String> splitWords(String keywords) {
+        List<String> words = new ArrayList<>();
+        String normalized = SearchCache.normalize(keywords).replaceAll("[\"*%_]", " ").trim();
+        if (normalized.isEmpty()) {
+            return words;
+        }
+        for (String word : normalized.split("\\s+")) {
+            words.add(word);
+        }
+        return words;
+    }
+}
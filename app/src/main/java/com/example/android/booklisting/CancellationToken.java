@@ -0,0 +1,88 @@
+package com.example.android.booklisting;
+
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Signals that a piece of work has been superseded and should stop as soon as possible.
+ * Work that blocks, such as a network read, registers a listener that unblocks it,
+ * and work that loops checks {@link #throwIfCanceled()} between steps.
+ * <p>
+ * This is used instead of android.os.CancellationSignal, which is not available on API 15.
+ */
+public class CancellationToken {
+
+    /**
+     * Listener that is called once, when the token is canceled.
+     */
+    public interface OnCancelListener {
+        void onCancel();
+    }
+
+    /**
+     * Whether the token has been canceled.
+     */
+    private volatile boolean mCanceled;
+
+    /**
+     * Listeners that are called when the token is canceled.
+     */
+    private final List<OnCancelListener> mListeners = new ArrayList<>();
+
+    /**
+     * Return whether the token has been canceled.
+     */
+    public boolean isCanceled() {
+        return mCanceled;
+    }
+
+    /**
+     * Throw an {@link InterruptedIOException} if the token has been canceled,
+     * so that the work stops like an aborted read.
+     */
+    public void throwIfCanceled() throws InterruptedIOException {
+        if (mCanceled) {
+            throw new InterruptedIOException("Canceled");
+        }
+    }
+
+    /**
+     * Cancel the token, and call every listener once.
+     */
+    public void cancel() {
+        List<OnCancelListener> listeners;
+        synchronized (this) {
+            if (mCanceled) {
+                return;
+            }
+            mCanceled = true;
+            listeners = new ArrayList<>(mListeners);
+            mListeners.clear();
+        }
+        for (OnCancelListener listener : listeners) {
+            listener.onCancel();
+        }
+    }
+
+    /**
+     * Add a listener that is called when the token is canceled,
+     * or at once if it has already been canceled.
+     */
+    public void addOnCancelListener(OnCancelListener listener) {
+        synchronized (this) {
+            if (!mCanceled) {
+                mListeners.add(listener);
+                return;
+            }
+        }
+        listener.onCancel();
+    }
+
+    /**
+     * Remove a listener that is no longer needed, such as when the work has finished.
+     */
+    public synchronized void removeOnCancelListener(OnCancelListener listener) {
+        mListeners.remove(listener);
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.android.booklisting;
+
+import android.os.SystemClock;
+
+import java.util.HashMap;
+
+/**
+ * Stops the requests to a host for a while after it has failed several times in a row,
+ * so that a broken host does not tie up the worker threads, the radio and the battery.
+ * <p>
+ * The breaker is closed while the host works. After {@link #FAILURE_THRESHOLD} failures
+ * in a row it opens, and every request is refused until the open time has passed. Then a
+ * single trial request is let through: if it works the breaker closes, and if it fails the
+ * breaker opens again for twice as long, up to {@link #MAX_OPEN_MILLIS}.
+ */
+public class CircuitBreaker {
+
+    /**
+     * Number of failures in a row that open the breaker.
+     */
+    private static final int FAILURE_THRESHOLD = 5;
+
+    /**
+     * Time in milliseconds that the breaker first stays open.
+     */
+    private static final long BASE_OPEN_MILLIS = 30 * 1000;
+
+    /**
+     * Max time in milliseconds that the breaker stays open.
+     */
+    private static final long MAX_OPEN_MILLIS = 5 * 60 * 1000;
+
+    /**
+     * The breakers of the hosts, by their host name.
+     */
+    private static final HashMap<String, CircuitBreaker> BREAKERS = new HashMap<>();
+
+    /**
+     * Number of failures in a row since the last success.
+     */
+    private int mFailureCount;
+
+    /**
+     * Time in milliseconds that the breaker stays open the next time it opens.
+     */
+    private long mOpenMillis = BASE_OPEN_MILLIS;
+
+    /**
+     * Elapsed realtime at which the open breaker lets a trial request through,
+     * or 0 if the breaker is closed.
+     */
+    private long mOpenUntil;
+
+    /**
+     * Whether the trial request of the open breaker is running.
+     */
+    private boolean mTrialRunning;
+
+    /**
+     * Create a package-private constructor because a breaker is only meant to be shared
+     * through {@link #forHost(String)}, apart from the unit tests.
+     */
+    CircuitBreaker() {
+    }
+
+    /**
+     * Return the breaker of the given host, creating it on first use.
+     *
+     * @param host is the host name of the requests.
+     */
+    public static CircuitBreaker forHost(String host) {
+        synchronized (BREAKERS) {
+            CircuitBreaker breaker = BREAKERS.get(host);
+            if (breaker == null) {
+                breaker = new CircuitBreaker();
+                BREAKERS.put(host, breaker);
+            }
+            return breaker;
+        }
+    }
+
+    /**
+     * Return whether a request may be made to the host now. A request that is allowed
+     * must be followed by {@link #recordSuccess()}, {@link #recordFailure()} or
+     * {@link #recordCanceled()}, so that a trial request is never left running.
+     */
+    public synchronized boolean allowRequest() {
+        if (mOpenUntil == 0) {
+            return true;
+        } else if (mTrialRunning || now() < mOpenUntil) {
+            return false;
+        }
+        mTrialRunning = true;
+        return true;
+    }
+
+    /**
+     * Return whether the breaker is closed, which is when the host is known to work.
+     */
+    public synchronized boolean isClosed() {
+        return mOpenUntil == 0;
+    }
+
+    /**
+     * Record that a request to the host has worked, which closes the breaker.
+     */
+    public synchronized void recordSuccess() {
+        mFailureCount = 0;
+        mOpenMillis = BASE_OPEN_MILLIS;
+        mOpenUntil = 0;
+        mTrialRunning = false;
+    }
+
+    /**
+     * Record that a request to the host has failed, which opens the breaker after
+     * several failures in a row, or at once when it was the trial request.
+     */
+    public synchronized void recordFailure() {
+        mFailureCount++;
+        if (mTrialRunning || mFailureCount >= FAILURE_THRESHOLD) {
+            if (mTrialRunning) {
+                mOpenMillis = Math.min(mOpenMillis * 2, MAX_OPEN_MILLIS);
+            }
+            mOpenUntil = now() + mOpenMillis;
+            mTrialRunning = false;
+        }
+    }
+
+    /**
+     * Return the current time in milliseconds, which the unit tests replace.
+     */
+    long now() {
+        return SystemClock.elapsedRealtime();
+    }
+
+    /**
+     * Record that a request to the host has been canceled before it could tell anything,
+     * so that the next request may be the trial instead.
+     */
+    public synchronized void recordCanceled() {
+        mTrialRunning = false;
+    }
+}
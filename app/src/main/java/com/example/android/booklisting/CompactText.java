@@ -0,0 +1,176 @@
+package com.example.android.booklisting;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A text that is kept as encoded bytes in a buffer shared by the books of a page,
+ * and decoded into a {@link String} only the first time that it is asked for.
+ * <p>
+ * A text is encoded in UTF-8, unless UTF-8 would take more bytes than the UTF-16 of a
+ * {@link String}, such as for Chinese text, in which case it is kept in UTF-16.
+ */
+public final class CompactText {
+
+    /**
+     * Charsets of the encoded bytes.
+     */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final Charset UTF_16LE = Charset.forName("UTF-16LE");
+
+    /**
+     * Shared buffer that holds the bytes, or null if the text has been given decoded.
+     * It is only replaced by its trimmed copy before the text is handed out.
+     */
+    private byte[] mBuffer;
+
+    /**
+     * Offset and length of the bytes in the buffer.
+     */
+    private final int mOffset, mLength;
+
+    /**
+     * Whether the bytes are in UTF-16 instead of UTF-8.
+     */
+    private final boolean mUtf16;
+
+    /**
+     * Decoded text, or null if it has not been decoded yet.
+     */
+    private String mDecoded;
+
+    private CompactText(byte[] buffer, int offset, int length, boolean utf16, String decoded) {
+        mBuffer = buffer;
+        mOffset = offset;
+        mLength = length;
+        mUtf16 = utf16;
+        mDecoded = decoded;
+    }
+
+    /**
+     * Return a {@link CompactText} that simply holds the decoded text, or null if it is null.
+     */
+    public static CompactText of(String text) {
+        return text == null ? null : new CompactText(null, 0, 0, false, text);
+    }
+
+    /**
+     * Return the text, which is decoded the first time and kept from then on.
+     */
+    public String get() {
+        if (mDecoded == null) {
+            mDecoded = decode();
+        }
+        return mDecoded;
+    }
+
+    /**
+     * Return the text without keeping it decoded, for callers that only need it once,
+     * such as when it is written to the database or laid out ahead of time.
+     */
+    public String peek() {
+        String decoded = mDecoded;
+        return decoded != null ? decoded : decode();
+    }
+
+    /**
+     * Return whether the two texts are the same, comparing their bytes when they are both
+     * encoded in the same way, so that neither of them is decoded.
+     */
+    public static boolean contentEquals(CompactText text, CompactText other) {
+        if (text == other) {
+            return true;
+        } else if (text == null || other == null) {
+            return false;
+        } else if (text.mBuffer != null && other.mBuffer != null
+                && text.mUtf16 == other.mUtf16) {
+            if (text.mLength != other.mLength) {
+                return false;
+            }
+            for (int index = 0; index < text.mLength; index++) {
+                if (text.mBuffer[text.mOffset + index] != other.mBuffer[other.mOffset + index]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return text.peek().equals(other.peek());
+    }
+
+    /**
+     * Helper method that decode the bytes.
+     */
+    private String decode() {
+        return new String(mBuffer, mOffset, mLength, mUtf16 ? UTF_16LE : UTF_8);
+    }
+
+    /**
+     * Buffer that the texts of a page are encoded into. It grows by chunks, and the texts
+     * only hold a reference to their chunk, so a chunk is released with its last book.
+     * The last chunk is trimmed to the bytes it holds by {@link #finish()}, so that a page of
+     * a few short subtitles does not keep a whole chunk.
+     * A buffer is used by one thread at a time, while the page is being read.
+     */
+    public static final class Buffer {
+
+        /**
+         * Size of a chunk in bytes, unless a single text is larger.
+         */
+        private static final int CHUNK_SIZE = 8 * 1024;
+
+        /**
+         * Chunk that the next text is copied into, and the number of bytes used in it.
+         */
+        private byte[] mChunk;
+        private int mChunkLength;
+
+        /**
+         * Texts that have been encoded into the current chunk.
+         */
+        private final List<CompactText> mChunkTexts = new ArrayList<>();
+
+        /**
+         * Encode the text into the buffer, and return it as a {@link CompactText},
+         * or null if it is null.
+         */
+        public CompactText add(String text) {
+            if (text == null) {
+                return null;
+            }
+            byte[] bytes = text.getBytes(UTF_8);
+            boolean utf16 = bytes.length > 2 * text.length();
+            if (utf16) {
+                bytes = text.getBytes(UTF_16LE);
+            }
+            if (mChunk == null || mChunkLength + bytes.length > mChunk.length) {
+                mChunk = new byte[Math.max(CHUNK_SIZE, bytes.length)];
+                mChunkLength = 0;
+                mChunkTexts.clear();
+            }
+            System.arraycopy(bytes, 0, mChunk, mChunkLength, bytes.length);
+            CompactText compactText = new CompactText(mChunk, mChunkLength, bytes.length,
+                    utf16, null);
+            mChunkLength += bytes.length;
+            mChunkTexts.add(compactText);
+            return compactText;
+        }
+
+        /**
+         * Trim the current chunk to the bytes it holds. This must be called once the texts of
+         * the page have all been added, before they are handed to other threads.
+         */
+        public void finish() {
+            if (mChunk != null && mChunkLength < mChunk.length) {
+                byte[] trimmed = Arrays.copyOf(mChunk, mChunkLength);
+                for (CompactText text : mChunkTexts) {
+                    text.mBuffer = trimmed;
+                }
+            }
+            mChunk = null;
+            mChunkLength = 0;
+            mChunkTexts.clear();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.android.booklisting;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+/**
+ * Helper methods that decode book covers no larger than the view that shows them.
+ * The bounds of the image are read first, so that the full resolution image is never decoded.
+ */
+public class CoverDecoder {
+
+    /**
+     * MIME type of the images that never have an alpha channel.
+     */
+    private static final String MIME_TYPE_JPEG = "image/jpeg";
+
+    /**
+     * Create a private constructor because no one should ever create a {@link CoverDecoder} object.
+     */
+    private CoverDecoder() {
+    }
+
+    /**
+     * Decode the image bytes with the largest power of two sample size
+     * that still keeps both sides at least as large as the requested size.
+     *
+     * @param data          is the encoded image bytes.
+     * @param reqWidth      is the width of the view in pixels.
+     * @param reqHeight     is the height of the view in pixels.
+     * @param preferRgb565  is whether to decode into RGB_565 when the image has no alpha.
+     * @param token         stops the decoding when it is canceled, which may be null.
+     * @return the decoded bitmap, or null when the bytes can not be decoded or is canceled.
+     */
+    public static Bitmap decodeByteArray(byte[] data, int reqWidth, int reqHeight,
+                                         boolean preferRgb565, CancellationToken token) {
+        // First decode with inJustDecodeBounds=true to check dimensions.
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(data, 0, data.length, options);
+
+        // Then decode the bitmap with inSampleSize set.
+        setDecodeOptions(options, reqWidth, reqHeight, preferRgb565);
+        CancellationToken.OnCancelListener cancelListener = watchCancellation(options, token);
+        try {
+            return isCanceled(token)
+                    ? null : BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        } finally {
+            if (token != null) {
+                token.removeOnCancelListener(cancelListener);
+            }
+        }
+    }
+
+    /**
+     * Ask the decoder to stop midway when the token is canceled.
+     * The decoder ignores the request since API 24, where the decoding simply runs to its end.
+     *
+     * @return the listener added to the token, or null if there is no token.
+     */
+    @SuppressWarnings("deprecation")
+    private static CancellationToken.OnCancelListener watchCancellation(
+            final BitmapFactory.Options options, CancellationToken token) {
+        if (token == null) {
+            return null;
+        }
+        CancellationToken.OnCancelListener cancelListener =
+                new CancellationToken.OnCancelListener() {
+                    @Override
+                    public void onCancel() {
+                        options.requestCancelDecode();
+                    }
+                };
+        token.addOnCancelListener(cancelListener);
+        return cancelListener;
+    }
+
+    /**
+     * Return whether the token has been canceled.
+     */
+    private static boolean isCanceled(CancellationToken token) {
+        return token != null && token.isCanceled();
+    }
+
+    /**
+     * Turn the bounds-only options into the options of the real decoding.
+     */
+    private static void setDecodeOptions(BitmapFactory.Options options, int reqWidth,
+                                         int reqHeight, boolean preferRgb565) {
+        options.inSampleSize = calculateInSampleSize(options, reqWidth, reqHeight);
+        if (preferRgb565 && MIME_TYPE_JPEG.equals(options.outMimeType)) {
+            // A JPEG image never has alpha, so half of the bytes are enough for each pixel.
+            options.inPreferredConfig = Bitmap.Config.RGB_565;
+        }
+        options.inJustDecodeBounds = false;
+    }
+
+    /**
+     * Return the largest power of two sample size that keeps both sides of the decoded image
+     * at least as large as the requested size.
+     */
+    private static int calculateInSampleSize(BitmapFactory.Options options,
+                                             int reqWidth, int reqHeight) {
+        int height = options.outHeight;
+        int width = options.outWidth;
+        int inSampleSize = 1;
+
+        if (reqWidth > 0 && reqHeight > 0 && (height > reqHeight || width > reqWidth)) {
+            int halfHeight = height / 2;
+            int halfWidth = width / 2;
+            while ((halfHeight / inSampleSize) >= reqHeight
+                    && (halfWidth / inSampleSize) >= reqWidth) {
+                inSampleSize *= 2;
+            }
+        }
+        return inSampleSize;
+    }
+}
@@ -0,0 +1,388 @@
+package com.example.android.booklisting;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The cover pipeline shared by the {@link ImageLoader} of the page on screen and the
+ * prefetches of the pages around it: the memory cache, the disk cache, the hedged download
+ * and the downsampled decode of each cover.
+ */
+public class CoverFetcher {
+
+    /**
+     * Tag for the log messages.
+     */
+    private static final String LOG_TAG = CoverFetcher.class.getSimpleName();
+
+    /**
+     * Merges the concurrent requests for the same cover, so that they share one download
+     * and one decoded bitmap.
+     */
+    private static final SingleFlight<String, Bitmap> COVER_FLIGHTS = new SingleFlight<>();
+
+    /**
+     * Timeouts of the cover requests in milliseconds.
+     */
+    private static final int COVER_CONNECT_TIMEOUT_MILLIS = 15000;
+    private static final int COVER_READ_TIMEOUT_MILLIS = 10000;
+
+    /**
+     * Number of the most recent cover latencies that the hedge delay is taken over.
+     */
+    private static final int LATENCY_WINDOW_SIZE = 32;
+
+    /**
+     * Min number of cover latencies before the hedge delay follows them.
+     */
+    private static final int MIN_LATENCY_SAMPLES = 5;
+
+    /**
+     * Percentile of the cover latencies after which a duplicate request is sent.
+     */
+    private static final double HEDGE_PERCENTILE = 0.9;
+
+    /**
+     * Hedge delay in milliseconds before enough latencies have been observed.
+     */
+    private static final long DEFAULT_HEDGE_DELAY_MILLIS = 2000;
+
+    /**
+     * Min hedge delay in milliseconds, so that a fast host is not sent every cover twice.
+     */
+    private static final long MIN_HEDGE_DELAY_MILLIS = 200;
+
+    /**
+     * The most recent times in milliseconds that a whole cover took to download.
+     */
+    private static final LatencyWindow COVER_LATENCIES = new LatencyWindow(LATENCY_WINDOW_SIZE);
+
+    /**
+     * Threads that run the download attempts of the covers, so that a duplicate attempt can
+     * race the first one. There are never more than two attempts for each worker thread.
+     */
+    private static final ExecutorService ATTEMPT_EXECUTOR = Executors.newCachedThreadPool();
+
+    /**
+     * Number of the duplicate cover requests that have been sent.
+     */
+    private static final AtomicInteger HEDGED_REQUEST_COUNT = new AtomicInteger();
+
+    /**
+     * Whether covers without alpha are decoded into RGB_565 instead of ARGB_8888.
+     */
+    private static boolean sPreferRgb565 = true;
+
+    /**
+     * The single instance shared by every load of the process.
+     */
+    private static CoverFetcher sInstance;
+
+    /**
+     * Memory cache of the decoded book covers.
+     */
+    private final ImageCache mImageCache;
+
+    /**
+     * Disk cache of the raw book cover files, which may be null if the cache dir can't be used.
+     */
+    private final DiskCache mDiskCache;
+
+    /**
+     * Size in pixels that the covers are decoded to, which is the size of the expanded
+     * book image, so that one decoded cover fits both the collapsed and the expanded card.
+     */
+    private final int mTargetWidth, mTargetHeight;
+
+    private CoverFetcher(Context context) {
+        mImageCache = ImageCache.getInstance(context);
+        mDiskCache = DiskCache.getInstance(context);
+        mTargetWidth = context.getResources()
+                .getDimensionPixelSize(R.dimen.book_image_expanded_width);
+        mTargetHeight = context.getResources()
+                .getDimensionPixelSize(R.dimen.card_expanded_height);
+    }
+
+    /**
+     * Return the shared {@link CoverFetcher}.
+     *
+     * @param context is any context of the application.
+     */
+    public static synchronized CoverFetcher getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new CoverFetcher(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    /**
+     * Return the number of cover requests that have been merged into a running request
+     * for the same image url string.
+     */
+    public static int getMergedRequestCount() {
+        return COVER_FLIGHTS.getMergedCount();
+    }
+
+    /**
+     * Return the number of duplicate cover requests that have been sent,
+     * because the first request was slower than most.
+     */
+    public static int getHedgedRequestCount() {
+        return HEDGED_REQUEST_COUNT.get();
+    }
+
+    /**
+     * Set whether covers without alpha are decoded into RGB_565, which uses half of the memory.
+     */
+    public static synchronized void setPreferRgb565(boolean preferRgb565) {
+        sPreferRgb565 = preferRgb565;
+    }
+
+    /**
+     * Return whether covers without alpha are decoded into RGB_565.
+     */
+    private static synchronized boolean isPreferRgb565() {
+        return sPreferRgb565;
+    }
+
+    /**
+     * Return the cover of the image url string, decoded to the size of the book image.
+     * The memory cache and then the disk cache are checked before making any network call,
+     * and the load is shared with any other caller of the same cover.
+     * This is on a background thread.
+     *
+     * @param imageUrlString is the image url string fetch from Internet.
+     * @param token          stops the load when it is canceled, which may be null.
+     * @return the decoded cover, or null when there is no image.
+     */
+    public Bitmap getBitmap(final String imageUrlString, CancellationToken token) {
+
+        // Return the cached cover at once if it has been decoded before.
+        Bitmap bitmap = mImageCache.get(imageUrlString);
+
+        // Otherwise load it, sharing the load with any other caller of the same cover.
+        if (bitmap == null && imageUrlString != null) {
+            bitmap = COVER_FLIGHTS.execute(imageUrlString, token, new SingleFlight.Work<Bitmap>() {
+                @Override
+                public Bitmap run(CancellationToken sharedToken) {
+                    Bitmap loaded = getImageBitmap(imageUrlString, sharedToken);
+                    mImageCache.put(imageUrlString, loaded);
+                    return loaded;
+                }
+            });
+        }
+        return bitmap;
+    }
+
+    /**
+     * Helper method that decode the downsampled cover from the disk cache, downloading it into
+     * the disk cache first when it is not there.
+     *
+     * @param imageUrlString is the image url string fetch from Internet.
+     * @return the decoded bitmap, or null when it can not be loaded.
+     */
+    private Bitmap getImageBitmap(String imageUrlString, CancellationToken token) {
+        // Read the cover that has been saved before.
+        byte[] bytes = mDiskCache == null ? null : mDiskCache.get(imageUrlString);
+
+        // Download the cover, and save it to the disk cache.
+        try {
+            if (bytes == null) {
+                bytes = downloadHedged(new URL(imageUrlString), token);
+                if (bytes != null && mDiskCache != null) {
+                    mDiskCache.put(imageUrlString, new ByteArrayInputStream(bytes));
+                }
+            }
+        } catch (MalformedURLException e) {
+            Log.e(LOG_TAG, "Problem building the URL ", e);
+        } catch (IOException e) {
+            // A timeout is an InterruptedIOException too, so tell a cancel by the token.
+            if (token.isCanceled()) {
+                Log.d(LOG_TAG, "The image request has been canceled.");
+            } else {
+                Log.e(LOG_TAG, "Problem getting the URL content ", e);
+            }
+        }
+
+        if (bytes == null || token.isCanceled()) {
+            return null;
+        }
+        // Decode the cover no larger than the book image view.
+        Bitmap bitmap;
+        long decodeStartNanos = Metrics.beginPhase(Metrics.PHASE_COVER_DECODE);
+        try {
+            bitmap = CoverDecoder.decodeByteArray(bytes,
+                    mTargetWidth, mTargetHeight, isPreferRgb565(), token);
+        } finally {
+            Metrics.endPhase(Metrics.PHASE_COVER_DECODE, decodeStartNanos);
+        }
+        if (bitmap == null && !token.isCanceled() && mDiskCache != null) {
+            // Drop the cover that can not be decoded, so that it is downloaded again next time.
+            mDiskCache.remove(imageUrlString);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Helper method that download a cover, sending a duplicate request when the first one is
+     * not back by the usual (90th percentile) latency, and taking whichever answers first.
+     * Nothing is sent while the circuit breaker of the host is open.
+     *
+     * @param url   is the URL of the cover.
+     * @param token stops the download when it is canceled.
+     * @return the bytes of the cover, or null when the host has answered without a cover,
+     * or when the host is not being requested.
+     * @throws IOException if every request of the cover has failed.
+     */
+    private static byte[] downloadHedged(final URL url, CancellationToken token)
+            throws IOException {
+        CircuitBreaker breaker = CircuitBreaker.forHost(url.getHost());
+        if (!breaker.allowRequest()) {
+            Log.d(LOG_TAG, "The image host is failing, skipping " + url);
+            return null;
+        }
+
+        // The attempts use their own token, so that the slower one is aborted
+        // as soon as the other one has answered.
+        final CancellationToken attemptToken = new CancellationToken();
+        CancellationToken.OnCancelListener cancelListener =
+                new CancellationToken.OnCancelListener() {
+                    @Override
+                    public void onCancel() {
+                        attemptToken.cancel();
+                    }
+                };
+        token.addOnCancelListener(cancelListener);
+        Callable<byte[]> attempt = new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws IOException {
+                return download(url, attemptToken);
+            }
+        };
+
+        long startTime = SystemClock.elapsedRealtime();
+        CompletionService<byte[]> attempts = new ExecutorCompletionService<>(ATTEMPT_EXECUTOR);
+        attempts.submit(attempt);
+        int runningCount = 1;
+        IOException failure = null;
+        boolean answered = false;
+        boolean interrupted = false;
+        try {
+            // Only hedge while the host is known to work, not with the trial request.
+            Future<byte[]> done = attempts.poll(getHedgeDelayMillis(), TimeUnit.MILLISECONDS);
+            if (done == null && breaker.isClosed() && !token.isCanceled()) {
+                HEDGED_REQUEST_COUNT.incrementAndGet();
+                attempts.submit(attempt);
+                runningCount++;
+            }
+            while (runningCount > 0) {
+                if (done == null) {
+                    done = attempts.take();
+                }
+                runningCount--;
+                try {
+                    byte[] bytes = done.get();
+                    answered = true;
+                    COVER_LATENCIES.record(SystemClock.elapsedRealtime() - startTime);
+                    return bytes;
+                } catch (ExecutionException e) {
+                    failure = e.getCause() instanceof IOException
+                            ? (IOException) e.getCause() : new IOException(e.getCause());
+                }
+                done = null;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            interrupted = true;
+            failure = new InterruptedIOException();
+        } finally {
+            attemptToken.cancel();
+            token.removeOnCancelListener(cancelListener);
+            if (answered) {
+                breaker.recordSuccess();
+            } else if (token.isCanceled() || interrupted) {
+                // A timeout is a failure of the host, even though it is an
+                // InterruptedIOException, so only a real cancel is left out.
+                breaker.recordCanceled();
+            } else {
+                breaker.recordFailure();
+            }
+        }
+        throw failure;
+    }
+
+    /**
+     * Helper method that return the time in milliseconds to wait for a cover
+     * before sending a duplicate request.
+     */
+    private static long getHedgeDelayMillis() {
+        if (COVER_LATENCIES.getSampleCount() < MIN_LATENCY_SAMPLES) {
+            return DEFAULT_HEDGE_DELAY_MILLIS;
+        }
+        return Math.max(MIN_HEDGE_DELAY_MILLIS, COVER_LATENCIES.getPercentile(HEDGE_PERCENTILE));
+    }
+
+    /**
+     * Helper method that make a single request of a cover, using the shared HTTP layer
+     * to reuse pooled connections.
+     *
+     * @return the bytes of the cover, or null when the host has answered without a cover.
+     * @throws IOException if the request has failed, including when the host has failed
+     *                     on its side.
+     */
+    private static byte[] download(URL url, CancellationToken token) throws IOException {
+        long startNanos = Metrics.beginPhase(Metrics.PHASE_COVER_DOWNLOAD);
+        try {
+            HttpClient.Response response = HttpClient.get(url,
+                    COVER_CONNECT_TIMEOUT_MILLIS, COVER_READ_TIMEOUT_MILLIS, token);
+            try {
+                int responseCode = response.getResponseCode();
+                if (RetryPolicy.isRetryable(responseCode)) {
+                    throw new IOException("Error response code: " + responseCode);
+                } else if (responseCode != 200) {
+                    Log.e(LOG_TAG, "Error response code: " + responseCode);
+                    return null;
+                }
+                return readBytes(response.getBody());
+            } finally {
+                // Closing the response returns the connection to the keep-alive pool.
+                response.close();
+            }
+        } finally {
+            Metrics.endPhase(Metrics.PHASE_COVER_DOWNLOAD, startNanos);
+        }
+    }
+
+    /**
+     * Helper method that read the whole stream into a byte array,
+     * so that it can be decoded twice, once for the bounds and once for the pixels.
+     */
+    private static byte[] readBytes(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int count;
+        while ((count = inputStream.read(buffer)) != -1) {
+            output.write(buffer, 0, count);
+        }
+        return output.toByteArray();
+    }
+}
@@ -0,0 +1,442 @@
+package com.example.android.booklisting;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A size-capped cache of raw book cover files in the app cache directory.
+ * <p>
+ * Every change is appended to a journal, so that the LRU order survives process death.
+ * A journal line is one of:
+ * <ul>
+ * <li>CLEAN key size, which means the file of the key has been completely written.</li>
+ * <li>READ key, which means the file of the key has been used.</li>
+ * <li>REMOVE key, which means the file of the key has been deleted.</li>
+ * </ul>
+ * A file is always written to a temp file first, and then renamed to its final name,
+ * so a crash can never leave a half-written cover behind a CLEAN line.
+ */
+public class DiskCache {
+
+    /**
+     * Tag for the log messages.
+     */
+    private static final String LOG_TAG = DiskCache.class.getSimpleName();
+
+    /**
+     * Name of the cache directory in the app cache dir.
+     */
+    private static final String DIRECTORY_NAME = "covers";
+
+    /**
+     * Max total byte count of the cached covers.
+     */
+    private static final long MAX_BYTES = 20 * 1024 * 1024;
+
+    /**
+     * Rebuild the journal when it has this many more lines than the entries it describes.
+     */
+    private static final int REDUNDANT_OP_COMPACT_THRESHOLD = 2000;
+
+    /**
+     * Name of the journal files.
+     */
+    private static final String JOURNAL_FILE = "journal";
+    private static final String JOURNAL_FILE_TEMP = "journal.tmp";
+
+    /**
+     * Suffix of the files that have not been completely written.
+     */
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /**
+     * Journal operations.
+     */
+    private static final String CLEAN = "CLEAN";
+    private static final String READ = "READ";
+    private static final String REMOVE = "REMOVE";
+
+    /**
+     * The single instance shared by every loader of the process.
+     */
+    private static DiskCache sInstance;
+
+    /**
+     * Directory that holds the journal and the cover files.
+     */
+    private final File mDirectory;
+
+    /**
+     * Max total byte count of the cover files.
+     */
+    private final long mMaxBytes;
+
+    /**
+     * Map from the key to the file size, in access order, so that the eldest is the LRU one.
+     */
+    private final LinkedHashMap<String, Long> mEntries = new LinkedHashMap<>(0, 0.75f, true);
+
+    /**
+     * Current total byte count of the cover files.
+     */
+    private long mSize;
+
+    /**
+     * Number of journal lines that do not describe a live entry.
+     */
+    private int mRedundantOpCount;
+
+    /**
+     * Writer that appends to the journal.
+     */
+    private Writer mJournalWriter;
+
+    /**
+     * Counter used to give every temp file a unique name.
+     */
+    private long mNextTempId;
+
+    /**
+     * Create a new {@link DiskCache} object, and read its state back from the journal.
+     *
+     * @param directory is the directory that holds the journal and the cover files.
+     * @param maxBytes  is the max total byte count of the cover files.
+     */
+    private DiskCache(File directory, long maxBytes) throws IOException {
+        mDirectory = directory;
+        mMaxBytes = maxBytes;
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+            throw new IOException("Unable to create cache directory " + mDirectory);
+        }
+        readJournal();
+        deleteUntrackedFiles();
+        rebuildJournal();
+    }
+
+    /**
+     * Return the shared {@link DiskCache} in the app cache dir,
+     * or null if the cache dir can not be used.
+     *
+     * @param context is any context of the application.
+     */
+    public static synchronized DiskCache getInstance(Context context) {
+        if (sInstance == null) {
+            try {
+                sInstance = new DiskCache(
+                        new File(context.getApplicationContext().getCacheDir(), DIRECTORY_NAME),
+                        MAX_BYTES);
+            } catch (IOException e) {
+                Log.e(LOG_TAG, "Problem opening the disk cache.", e);
+            }
+        }
+        return sInstance;
+    }
+
+    /**
+     * Return the content of the cached file of the given image URL, or null if it is not
+     * on disk. The file is read while holding the lock of the cache, so that it can not be
+     * evicted halfway, and covers are small enough for that to be quick.
+     */
+    public synchronized byte[] get(String imageUrl) {
+        if (imageUrl == null) {
+            return null;
+        }
+        String key = keyOf(imageUrl);
+        Long length = mEntries.get(key);
+        if (length == null) {
+            return null;
+        }
+        File file = new File(mDirectory, key);
+        byte[] bytes = new byte[(int) (long) length];
+        try {
+            FileInputStream inputStream = new FileInputStream(file);
+            try {
+                int offset = 0;
+                int count;
+                while (offset < bytes.length
+                        && (count = inputStream.read(bytes, offset, bytes.length - offset)) != -1) {
+                    offset += count;
+                }
+                if (offset < bytes.length) {
+                    throw new IOException("Truncated cache file " + file);
+                }
+            } finally {
+                inputStream.close();
+            }
+        } catch (IOException e) {
+            // The file has been deleted by the system when the storage is low,
+            // or can not be read any more.
+            Log.w(LOG_TAG, "Problem reading the cache file, dropping it.", e);
+            removeKey(key);
+            return null;
+        }
+        appendJournal(READ + " " + key);
+        return bytes;
+    }
+
+    /**
+     * Delete the cached file of the given image URL, such as when it can not be decoded.
+     */
+    public synchronized void remove(String imageUrl) {
+        if (imageUrl != null) {
+            removeKey(keyOf(imageUrl));
+        }
+    }
+
+    /**
+     * Delete the file of the key, if it is in the cache, and record it in the journal.
+     */
+    private void removeKey(String key) {
+        Long length = mEntries.remove(key);
+        if (length == null) {
+            return;
+        }
+        deleteIfExists(new File(mDirectory, key));
+        mSize -= length;
+        appendJournal(REMOVE + " " + key);
+    }
+
+    /**
+     * Write the content of the stream to the cache as the file of the given image URL.
+     * The stream is read without holding the lock of the cache, so that a slow download
+     * does not block other readers.
+     *
+     * @return the cached file, or null if it can not be written.
+     */
+    public File put(String imageUrl, InputStream inputStream) throws IOException {
+        if (imageUrl == null || inputStream == null) {
+            return null;
+        }
+        String key = keyOf(imageUrl);
+        File tempFile = new File(mDirectory, key + "." + nextTempId() + TEMP_SUFFIX);
+        FileOutputStream outputStream = new FileOutputStream(tempFile);
+        long length = 0;
+        boolean written = false;
+        try {
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = inputStream.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, count);
+                length += count;
+            }
+            // Make sure the bytes are on flash before the rename makes them visible.
+            outputStream.getFD().sync();
+            written = true;
+        } finally {
+            outputStream.close();
+            if (!written) {
+                deleteIfExists(tempFile);
+            }
+        }
+        return commit(key, tempFile, length);
+    }
+
+    /**
+     * Rename the temp file to the final name of the key, record it in the journal,
+     * and evict the least recently used files that do not fit.
+     */
+    private synchronized File commit(String key, File tempFile, long length) {
+        File file = new File(mDirectory, key);
+        Long previousLength = mEntries.get(key);
+        if (!tempFile.renameTo(file)) {
+            deleteIfExists(tempFile);
+            return null;
+        }
+        if (previousLength != null) {
+            // The older CLEAN line of the key is now redundant.
+            mSize -= previousLength;
+            mRedundantOpCount++;
+        }
+        mEntries.put(key, length);
+        mSize += length;
+        appendJournal(CLEAN + " " + key + " " + length);
+        trimToSize();
+        return file;
+    }
+
+    /**
+     * Delete the least recently used files until the total size fits the max size.
+     */
+    private void trimToSize() {
+        Iterator<Map.Entry<String, Long>> iterator = mEntries.entrySet().iterator();
+        while (mSize > mMaxBytes && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            deleteIfExists(new File(mDirectory, eldest.getKey()));
+            mSize -= eldest.getValue();
+            iterator.remove();
+            appendJournal(REMOVE + " " + eldest.getKey());
+        }
+    }
+
+    /**
+     * Read the journal into the entry map. A line that can not be parsed, such as the last line
+     * written before a crash, ends the reading, and the journal is rebuilt afterwards.
+     */
+    private void readJournal() throws IOException {
+        File journal = new File(mDirectory, JOURNAL_FILE);
+        if (!journal.exists()) {
+            return;
+        }
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(journal), Charset.forName("UTF-8")));
+        int lineCount = 0;
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split(" ");
+                if (parts.length == 3 && parts[0].equals(CLEAN)) {
+                    Long previousLength = mEntries.put(parts[1], Long.parseLong(parts[2]));
+                    if (previousLength != null) {
+                        mSize -= previousLength;
+                    }
+                    mSize += Long.parseLong(parts[2]);
+                } else if (parts.length == 2 && parts[0].equals(READ)) {
+                    mEntries.get(parts[1]);
+                } else if (parts.length == 2 && parts[0].equals(REMOVE)) {
+                    Long length = mEntries.remove(parts[1]);
+                    if (length != null) {
+                        mSize -= length;
+                    }
+                } else {
+                    Log.w(LOG_TAG, "Truncated journal line: " + line);
+                    break;
+                }
+                lineCount++;
+            }
+        } catch (NumberFormatException e) {
+            Log.w(LOG_TAG, "Corrupt journal, keep the entries read so far.", e);
+        } finally {
+            reader.close();
+        }
+        mRedundantOpCount = lineCount - mEntries.size();
+    }
+
+    /**
+     * Delete the temp files left by a crash, the files that are not in the journal,
+     * and forget the entries whose file is gone.
+     */
+    private void deleteUntrackedFiles() {
+        Iterator<Map.Entry<String, Long>> iterator = mEntries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Long> entry = iterator.next();
+            File file = new File(mDirectory, entry.getKey());
+            if (!file.exists() || file.length() != entry.getValue()) {
+                deleteIfExists(file);
+                mSize -= entry.getValue();
+                iterator.remove();
+            }
+        }
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (!name.equals(JOURNAL_FILE) && !mEntries.containsKey(name)) {
+                deleteIfExists(file);
+            }
+        }
+    }
+
+    /**
+     * Write a journal that only has the live entries, in LRU order, and replace the old one.
+     */
+    private void rebuildJournal() throws IOException {
+        if (mJournalWriter != null) {
+            mJournalWriter.close();
+        }
+        File journal = new File(mDirectory, JOURNAL_FILE);
+        File tempJournal = new File(mDirectory, JOURNAL_FILE_TEMP);
+        FileOutputStream outputStream = new FileOutputStream(tempJournal);
+        Writer writer = new BufferedWriter(
+                new OutputStreamWriter(outputStream, Charset.forName("UTF-8")));
+        try {
+            for (Map.Entry<String, Long> entry : mEntries.entrySet()) {
+                writer.write(CLEAN + " " + entry.getKey() + " " + entry.getValue() + "\n");
+            }
+            writer.flush();
+            outputStream.getFD().sync();
+        } finally {
+            writer.close();
+        }
+        if (!tempJournal.renameTo(journal)) {
+            throw new IOException("Unable to replace the journal.");
+        }
+        mRedundantOpCount = 0;
+        mJournalWriter = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(journal, true), Charset.forName("UTF-8")));
+    }
+
+    /**
+     * Append a line to the journal, and rebuild the journal when it has grown too redundant.
+     */
+    private void appendJournal(String line) {
+        try {
+            mJournalWriter.write(line + "\n");
+            mJournalWriter.flush();
+            if (!line.startsWith(CLEAN)) {
+                mRedundantOpCount++;
+            }
+            if (mRedundantOpCount >= REDUNDANT_OP_COMPACT_THRESHOLD
+                    && mRedundantOpCount >= mEntries.size()) {
+                rebuildJournal();
+            }
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem writing the journal.", e);
+        }
+    }
+
+    /**
+     * Return a unique id for a new temp file.
+     */
+    private synchronized long nextTempId() {
+        return mNextTempId++;
+    }
+
+    /**
+     * Helper method that delete the file, and log when it can not be deleted.
+     */
+    private static void deleteIfExists(File file) {
+        if (file.exists() && !file.delete()) {
+            Log.w(LOG_TAG, "Unable to delete " + file);
+        }
+    }
+
+    /**
+     * Return the file name of the given image URL, which is the MD5 hex string of it.
+     */
+    private static String keyOf(String imageUrl) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            byte[] bytes = digest.digest(imageUrl.getBytes(Charset.forName("UTF-8")));
+            StringBuilder key = new StringBuilder();
+            for (byte b : bytes) {
+                String hex = Integer.toHexString(b & 0xff);
+                if (hex.length() == 1) {
+                    key.append('0');
+                }
+                key.append(hex);
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return String.valueOf(imageUrl.hashCode());
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.example.android.booklisting;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The single HTTP layer shared by the search requests and the cover requests.
+ * <p>
+ * Connections are never disconnected after use. Instead, the response body is read to the end
+ * and closed, which returns the connection to the keep-alive pool of {@link HttpURLConnection},
+ * so that later requests to api.douban.com and the image host skip the TCP and TLS handshakes.
+ * Responses are requested gzip-encoded and decoded on the fly.
+ */
+public class HttpClient {
+
+    /**
+     * Tag for the log messages.
+     */
+    private static final String LOG_TAG = HttpClient.class.getSimpleName();
+
+    /**
+     * Max number of idle keep-alive connections kept in the pool, for all the hosts together.
+     * It does not limit the number of connections that are open at the same time.
+     */
+    private static final int MAX_IDLE_CONNECTIONS = 6;
+
+    /**
+     * Max number of bytes that are read from an unfinished body, so that its connection can be
+     * reused. A longer body is closed instead, which drops the connection.
+     */
+    private static final int MAX_DRAIN_BYTES = 64 * 1024;
+
+    /**
+     * Threads that abort the canceled connections. A token may be canceled on the main thread,
+     * and closing a TLS socket there is a network call that may block on the socket lock.
+     */
+    private static final ExecutorService DISCONNECT_EXECUTOR = Executors.newCachedThreadPool();
+
+    static {
+        // Set up the connection pool of HttpURLConnection before the first request.
+        System.setProperty("http.keepAlive", "true");
+        System.setProperty("http.maxConnections",
+                Integer.toString(MAX_IDLE_CONNECTIONS));
+    }
+
+    /**
+     * Create a private constructor because no one should ever create a {@link HttpClient} object.
+     */
+    private HttpClient() {
+    }
+
+    /**
+     * The response of a GET request. It must be closed after use, so that its connection
+     * goes back to the pool.
+     */
+    public static class Response {
+
+        /**
+         * Connection of the response.
+         */
+        private final HttpURLConnection mConnection;
+
+        /**
+         * Response code, such as 200.
+         */
+        private final int mResponseCode;
+
+        /**
+         * Decoded body of the response, or null when there is no body.
+         */
+        private final InputStream mBody;
+
+        /**
+         * Cancellation token of the request and its listener, which may be null.
+         */
+        private final CancellationToken mCancellationToken;
+        private final CancellationToken.OnCancelListener mCancelListener;
+
+        private Response(HttpURLConnection connection, int responseCode, InputStream body,
+                         CancellationToken cancellationToken,
+                         CancellationToken.OnCancelListener cancelListener) {
+            mConnection = connection;
+            mResponseCode = responseCode;
+            mBody = body;
+            mCancellationToken = cancellationToken;
+            mCancelListener = cancelListener;
+        }
+
+        /**
+         * Return the response code, such as 200.
+         */
+        public int getResponseCode() {
+            return mResponseCode;
+        }
+
+        /**
+         * Return the decoded body of the response, which may be null for an error response.
+         */
+        public InputStream getBody() {
+            return mBody;
+        }
+
+        /**
+         * Return the number of bytes of the body on the wire, or -1 if it is unknown.
+         */
+        public int getContentLength() {
+            return mConnection.getContentLength();
+        }
+
+        /**
+         * Read the rest of the body and close it, so that its connection can be reused.
+         */
+        public void close() {
+            if (mCancellationToken != null) {
+                mCancellationToken.removeOnCancelListener(mCancelListener);
+            }
+            if (mBody == null) {
+                return;
+            }
+            if (mCancellationToken != null && mCancellationToken.isCanceled()) {
+                // The connection has been aborted, so there is nothing to drain.
+                try {
+                    mBody.close();
+                } catch (IOException e) {
+                    Log.w(LOG_TAG, "Problem closing the response body.", e);
+                }
+                return;
+            }
+            try {
+                byte[] buffer = new byte[8192];
+                int drained = 0;
+                int count;
+                while (drained < MAX_DRAIN_BYTES && (count = mBody.read(buffer)) != -1) {
+                    drained += count;
+                }
+            } catch (IOException e) {
+                Log.w(LOG_TAG, "Problem draining the response body.", e);
+            } finally {
+                try {
+                    mBody.close();
+                } catch (IOException e) {
+                    Log.w(LOG_TAG, "Problem closing the response body.", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Make a GET request to the given URL through the shared connection pool.
+     *
+     * @param url               is the URL to request.
+     * @param connectTimeout    is the connect timeout in milliseconds.
+     * @param readTimeout       is the read timeout in milliseconds.
+     * @param cancellationToken aborts the connection when it is canceled, which may be null.
+     * @return the response, which must be closed after use.
+     */
+    public static Response get(URL url, int connectTimeout, int readTimeout,
+                               CancellationToken cancellationToken) throws IOException {
+        final HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
+        urlConnection.setReadTimeout(readTimeout);
+        urlConnection.setConnectTimeout(connectTimeout);
+        urlConnection.setRequestMethod("GET");
+        // Ask for a compressed body. Setting this header means the body is not decoded
+        // by HttpURLConnection itself, so it is decoded below.
+        urlConnection.setRequestProperty("Accept-Encoding", "gzip");
+
+        // Abort the connection, and so any blocking connect or read, when the request is canceled.
+        CancellationToken.OnCancelListener cancelListener = null;
+        if (cancellationToken != null) {
+            cancelListener = new CancellationToken.OnCancelListener() {
+                @Override
+                public void onCancel() {
+                    DISCONNECT_EXECUTOR.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            urlConnection.disconnect();
+                        }
+                    });
+                }
+            };
+            cancellationToken.addOnCancelListener(cancelListener);
+        }
+
+        try {
+            if (cancellationToken != null) {
+                cancellationToken.throwIfCanceled();
+            }
+            urlConnection.connect();
+
+            int responseCode = urlConnection.getResponseCode();
+            InputStream body = responseCode < HttpURLConnection.HTTP_BAD_REQUEST
+                    ? urlConnection.getInputStream() : urlConnection.getErrorStream();
+            if (body != null && "gzip".equalsIgnoreCase(urlConnection.getContentEncoding())) {
+                body = new GZIPInputStream(body);
+            }
+            return new Response(urlConnection, responseCode, body,
+                    cancellationToken, cancelListener);
+        } catch (IOException e) {
+            if (cancellationToken != null) {
+                cancellationToken.removeOnCancelListener(cancelListener);
+            }
+            // No response is handed out, so no one else can close the connection.
+            urlConnection.disconnect();
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.android.booklisting;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.util.LruCache;
+
+/**
+ * A process-wide memory cache of decoded book cover {@link Bitmap}s, keyed by image URL.
+ * The budget is counted in bitmap bytes, and the least recently used covers are evicted first.
+ */
+public class ImageCache {
+
+    /**
+     * The cache may use up to one divisor-th of the memory class of the application.
+     */
+    private static final int MEMORY_CLASS_DIVISOR = 8;
+
+    /**
+     * The single instance shared by every loader of the process.
+     */
+    private static ImageCache sInstance;
+
+    /**
+     * LRU cache that maps the image URL to its decoded bitmap.
+     */
+    private final LruCache<String, Bitmap> mMemoryCache;
+
+    /**
+     * Create a new {@link ImageCache} object.
+     *
+     * @param maxBytes is the max total byte count of the bitmaps kept in memory.
+     */
+    private ImageCache(int maxBytes) {
+        mMemoryCache = new LruCache<String, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                // Count the budget in bytes rather than number of entries.
+                return bitmap.getByteCount();
+            }
+        };
+    }
+
+    /**
+     * Return the shared {@link ImageCache}, creating it with a budget that is a fraction of
+     * {@link ActivityManager#getMemoryClass()} the first time it is called.
+     *
+     * @param context is any context of the application.
+     */
+    public static synchronized ImageCache getInstance(Context context) {
+        if (sInstance == null) {
+            ActivityManager activityManager = (ActivityManager) context.getApplicationContext()
+                    .getSystemService(Context.ACTIVITY_SERVICE);
+            int memoryClass = activityManager.getMemoryClass();
+            sInstance = new ImageCache(memoryClass * 1024 * 1024 / MEMORY_CLASS_DIVISOR);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Return the cached bitmap of the given image URL, or null if it is not in memory.
+     */
+    public Bitmap get(String imageUrl) {
+        if (imageUrl == null) {
+            return null;
+        }
+        return mMemoryCache.get(imageUrl);
+    }
+
+    /**
+     * Put the decoded bitmap of the given image URL into memory.
+     */
+    public void put(String imageUrl, Bitmap bitmap) {
+        if (imageUrl != null && bitmap != null) {
+            mMemoryCache.put(imageUrl, bitmap);
+        }
+    }
+}
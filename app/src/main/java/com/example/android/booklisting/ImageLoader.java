@@ -2,15 +2,25 @@ package com.example.android.booklisting;
 
 import android.content.AsyncTaskLoader;
 import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
 import android.util.Log;
 
-import java.io.IOException;
-import java.io.InputStream;
-import java.net.MalformedURLException;
-import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Loads the image resource of books by using an AsyncTask to load drawable by the given URL.
@@ -22,13 +32,113 @@ public class ImageLoader extends AsyncTaskLoader<List<Drawable>> {
      */
     private static final String LOG_TAG = ImageLoader.class.getSimpleName();
 
+    /**
+     * Default number of covers that are downloaded at the same time.
+     * All the covers come from the same image host, so this is also the limit per host.
+     */
+    private static final int DEFAULT_CONCURRENCY = 4;
+
+    /**
+     * Max number of covers that may be downloaded at the same time.
+     */
+    private static final int MAX_CONCURRENCY = 8;
+
+    /**
+     * Number of covers that are downloaded at the same time.
+     */
+    private static int sConcurrency = DEFAULT_CONCURRENCY;
+
+    /**
+     * Worker pool shared by every {@link ImageLoader}, created on first use.
+     */
+    private static ExecutorService sExecutor;
+
+    /**
+     * Number of covers of the pages around the page on screen that are downloaded
+     * at the same time.
+     */
+    private static final int PREFETCH_CONCURRENCY = 2;
+
+    /**
+     * Worker pool of low priority that loads the covers of the pages around the page
+     * on screen, apart from the shared worker pool, so that the covers on screen never wait
+     * behind them.
+     */
+    private static final ThreadPoolExecutor PREFETCH_EXECUTOR = new ThreadPoolExecutor(
+            PREFETCH_CONCURRENCY, PREFETCH_CONCURRENCY, 0L, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<Runnable>());
+
+    /**
+     * Handler of the main thread, which delivers each cover as soon as it is loaded.
+     */
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+
+    /**
+     * Listener that receives each cover as soon as it is loaded, which may be null.
+     * It is replaced when the activity that listens is recreated, such as after a rotation,
+     * and removed when the loader is reset.
+     */
+    private volatile OnImageLoadedListener mOnImageLoadedListener;
+
+    /**
+     * Cancellation token of the running load, which aborts its downloads and decodes.
+     */
+    private volatile CancellationToken mCancellationToken;
+
+    /**
+     * Cover pipeline that loads each cover.
+     */
+    private final CoverFetcher mCoverFetcher;
+
+    /**
+     * Cover URLs of the page, in the same order as its books.
+     */
+    private final List<String> mImageUrls;
+
     /**
      * Constructs a new {@link BookLoader}.
      *
-     * @param context of the activity.
+     * @param context   of the activity.
+     * @param imageUrls is the cover URLs of the page, from its {@link SearchResult}.
+     * @param listener  receives each cover on the main thread as soon as it is loaded.
      */
-    public ImageLoader(Context context) {
+    public ImageLoader(Context context, List<String> imageUrls,
+                       OnImageLoadedListener listener) {
         super(context);
+        mImageUrls = imageUrls;
+        mOnImageLoadedListener = listener;
+        mCoverFetcher = CoverFetcher.getInstance(context);
+    }
+
+    /**
+     * Return the cover URLs of the page, in the same order as the loaded covers.
+     */
+    public List<String> getImageUrls() {
+        return mImageUrls;
+    }
+
+    /**
+     * Set the listener that receives each cover as soon as it is loaded, or null to remove it.
+     * This is on the main thread.
+     */
+    public void setOnImageLoadedListener(OnImageLoadedListener listener) {
+        mOnImageLoadedListener = listener;
+    }
+
+    /**
+     * Return whether the load has been canceled, so that it will not load every cover.
+     */
+    public boolean isCanceled() {
+        CancellationToken token = mCancellationToken;
+        return token != null && token.isCanceled();
+    }
+
+    /**
+     * The interface that receives each cover as soon as it is loaded,
+     * instead of waiting for the whole list.
+     */
+    public interface OnImageLoadedListener {
+        void onImageLoaded(String imageUrl, Drawable drawable);
     }
 
     /**
@@ -40,6 +150,88 @@ public class ImageLoader extends AsyncTaskLoader<List<Drawable>> {
         forceLoad();
     }
 
+    /**
+     * This is on the main thread, when the loader is destroyed, such as when its page has
+     * left the window. Abort the downloads of the covers that nobody will see.
+     */
+    @Override
+    protected void onReset() {
+        cancelLoad();
+        mOnImageLoadedListener = null;
+    }
+
+    /**
+     * Return the number of covers that are downloaded at the same time.
+     */
+    public static synchronized int getConcurrency() {
+        return sConcurrency;
+    }
+
+    /**
+     * Set the number of covers that are downloaded at the same time,
+     * so that it can be tuned for each device class.
+     * Downloads that are running keep going on the old worker pool.
+     *
+     * @param concurrency is the number of concurrent downloads, from 1 to 8.
+     */
+    public static synchronized void setConcurrency(int concurrency) {
+        concurrency = Math.max(1, Math.min(concurrency, MAX_CONCURRENCY));
+        if (concurrency != sConcurrency) {
+            sConcurrency = concurrency;
+            if (sExecutor != null) {
+                sExecutor.shutdown();
+                sExecutor = null;
+            }
+        }
+    }
+
+    /**
+     * Return the shared worker pool, creating it with the current concurrency level.
+     */
+    private static synchronized ExecutorService getExecutor() {
+        if (sExecutor == null) {
+            sExecutor = Executors.newFixedThreadPool(sConcurrency);
+        }
+        return sExecutor;
+    }
+
+    /**
+     * Load the covers of the given image url strings into the memory and disk caches
+     * on the worker pool of low priority, without delivering them to anyone.
+     *
+     * @param context   of the application.
+     * @param imageUrls is a list of the image url string of the covers.
+     * @param token     drops the covers that have not been loaded when it is canceled.
+     */
+    public static void prefetch(Context context, List<String> imageUrls,
+                                final CancellationToken token) {
+        if (imageUrls == null || imageUrls.isEmpty()) {
+            return;
+        }
+        final CoverFetcher coverFetcher = CoverFetcher.getInstance(context);
+        for (final String imageUrlString : imageUrls) {
+            PREFETCH_EXECUTOR.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (token.isCanceled()) {
+                        return;
+                    }
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    coverFetcher.getBitmap(imageUrlString, token);
+                }
+            });
+        }
+    }
+
+    /**
+     * Drop the covers of the pages around the page on screen that have not started loading,
+     * such as when users have moved to another page.
+     * The covers that are loading are stopped by canceling their token.
+     */
+    public static void cancelPrefetches() {
+        PREFETCH_EXECUTOR.getQueue().clear();
+    }
+
     /**
      * This is on a background thread.
      */
@@ -48,13 +240,60 @@ public class ImageLoader extends AsyncTaskLoader<List<Drawable>> {
 
         // Create an empty ArrayList that can start adding Drawable to.
         List<Drawable> drawables = new ArrayList<>();
-        // Get a reference of the QueryUtils.image ArrayList .
-        List<String> image = QueryUtils.image;
+        // Get a reference of the cover URLs of the page.
+        List<String> image = mImageUrls;
+
+        // Create the cancellation token of this load.
+        final CancellationToken token = new CancellationToken();
+        mCancellationToken = token;
 
         if (image != null && !image.isEmpty()) {
-            // Add Drawable resources using getImageDrawable method.
+            // Submit a download task for each image url string to the worker pool,
+            // so that they run in parallel.
+            final List<Future<Drawable>> futures = new ArrayList<>();
+            ExecutorService executor = getExecutor();
             for (int index = 0; index < image.size(); index++) {
-                drawables.add(getImageDrawable(image.get(index)));
+                final String imageUrlString = image.get(index);
+                futures.add(executor.submit(new Callable<Drawable>() {
+                    @Override
+                    public Drawable call() {
+                        if (token.isCanceled()) {
+                            return null;
+                        }
+                        Drawable drawable = getImageDrawable(imageUrlString, token);
+                        if (!token.isCanceled()) {
+                            deliverImage(imageUrlString, drawable);
+                        }
+                        return drawable;
+                    }
+                }));
+            }
+
+            // Drop the tasks that have not started, and free the threads of the running ones,
+            // when the load is canceled.
+            token.addOnCancelListener(new CancellationToken.OnCancelListener() {
+                @Override
+                public void onCancel() {
+                    for (Future<Drawable> future : futures) {
+                        future.cancel(true);
+                    }
+                }
+            });
+
+            // Add Drawable resources in the same order as the image url strings.
+            try {
+                for (Future<Drawable> future : futures) {
+                    try {
+                        drawables.add(future.get());
+                    } catch (ExecutionException e) {
+                        Log.e(LOG_TAG, "Problem loading the image ", e);
+                        drawables.add(null);
+                    } catch (CancellationException e) {
+                        drawables.add(null);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
         }
 
@@ -63,29 +302,52 @@ public class ImageLoader extends AsyncTaskLoader<List<Drawable>> {
     }
 
     /**
-     * Helper method that transfer the image url string to the drawable resource.
+     * This is on the main thread, when the load has been superseded, such as by restartLoader.
+     * Abort the downloads and decodes at once, so that the worker threads are freed.
+     */
+    @Override
+    public void cancelLoadInBackground() {
+        CancellationToken token = mCancellationToken;
+        if (token != null) {
+            token.cancel();
+        }
+    }
+
+    /**
+     * Helper method that load the cover of the image url string as a drawable resource.
      *
      * @param imageUrlString is the image url string fetch from Internet.
-     * @return imageResource is the image drawable resource.
-     */
-    private static Drawable getImageDrawable(String imageUrlString) {
-
-        // Create a null drawable object.
-        Drawable imageResource = null;
-
-        // Use URL and InputStream class to get stream content.
-        // And use createFromStream method to transfer stream to drawable.
-        try {
-            URL url = new URL(imageUrlString);
-            InputStream content = (InputStream) url.getContent();
-            imageResource = Drawable.createFromStream(content, "src");
-        } catch (MalformedURLException e) {
-            Log.e(LOG_TAG, "Problem building the URL ", e);
-        } catch (IOException e) {
-            Log.e(LOG_TAG, "Problem getting the URL content ", e);
+     * @param token          stops the load when it is canceled.
+     * @return the image drawable resource, or null when there is no image.
+     */
+    private Drawable getImageDrawable(String imageUrlString, CancellationToken token) {
+        Bitmap bitmap = mCoverFetcher.getBitmap(imageUrlString, token);
+        if (bitmap == null) {
+            return null;
         }
+        return new BitmapDrawable(getContext().getResources(), bitmap);
+    }
 
-        // Return the image drawable resource.
-        return imageResource;
+    /**
+     * Helper method that post a loaded cover to the listener on the main thread.
+     *
+     * @param imageUrlString is the image url string of the cover.
+     * @param drawable       is the loaded cover, which may be null.
+     */
+    private void deliverImage(final String imageUrlString, final Drawable drawable) {
+        if (mOnImageLoadedListener == null || drawable == null) {
+            return;
+        }
+        MAIN_HANDLER.post(new Runnable() {
+            @Override
+            public void run() {
+                // Read the listener on the main thread, where it is replaced, so that a cover
+                // never goes to an activity that has been destroyed in the meantime.
+                OnImageLoadedListener listener = mOnImageLoadedListener;
+                if (listener != null) {
+                    listener.onImageLoaded(imageUrlString, drawable);
+                }
+            }
+        });
     }
 }
@@ -0,0 +1,60 @@
+package com.example.android.booklisting;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the most recent latencies of a kind of request, and answers percentiles of them,
+ * so that a timeout or a hedge delay can follow the link instead of being fixed.
+ * It is thread safe.
+ */
+public class LatencyWindow {
+
+    /**
+     * Ring buffer of the most recent latencies in milliseconds.
+     */
+    private final long[] mLatencies;
+
+    /**
+     * Number of latencies that have been recorded, which may be more than the window.
+     */
+    private int mSampleCount;
+
+    /**
+     * Constructs a new {@link LatencyWindow}.
+     *
+     * @param size is the number of the most recent latencies that the percentiles are taken over.
+     */
+    public LatencyWindow(int size) {
+        mLatencies = new long[size];
+    }
+
+    /**
+     * Record the latency of a request in milliseconds.
+     */
+    public synchronized void record(long latencyMillis) {
+        mLatencies[mSampleCount % mLatencies.length] = latencyMillis;
+        mSampleCount++;
+    }
+
+    /**
+     * Return the number of latencies in the window.
+     */
+    public synchronized int getSampleCount() {
+        return Math.min(mSampleCount, mLatencies.length);
+    }
+
+    /**
+     * Return the given percentile of the latencies in the window, or -1 if there is none.
+     *
+     * @param percentile is the percentile, from 0 (exclusive) to 1.
+     */
+    public synchronized long getPercentile(double percentile) {
+        int count = getSampleCount();
+        if (count == 0) {
+            return -1;
+        }
+        long[] latencies = Arrays.copyOf(mLatencies, count);
+        Arrays.sort(latencies);
+        return latencies[Math.max(0, (int) Math.ceil(percentile * count) - 1)];
+    }
+}
@@ -0,0 +1,193 @@
+package com.example.android.booklisting;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Search as users type. Keystrokes are debounced, so that only the query that users pause on
+ * is sent to the API, and the first page of a shorter query that is still in the
+ * {@link SearchCache} is filtered locally to show a provisional list in the meantime.
+ */
+public class LiveSearch {
+
+    /**
+     * Time in milliseconds that the query must stay unchanged before it is searched.
+     */
+    private static final long DEBOUNCE_DELAY_MILLIS = 350;
+
+    /**
+     * Min number of characters of a query that is searched as users type.
+     */
+    private static final int MIN_QUERY_LENGTH = 2;
+
+    /**
+     * Callbacks of the live search, which are called on the main thread.
+     */
+    public interface Listener {
+
+        /**
+         * Called right after a keystroke, when a shorter query has a cached first page
+         * whose books match the new query.
+         *
+         * @param keywords    is the query that users have typed.
+         * @param books       is the books of the cached page that match the query.
+         * @param resultCount is the result count of the shorter query.
+         */
+        void onProvisionalResult(String keywords, List<Book> books, int resultCount);
+
+        /**
+         * Called when users have paused on the query, which should now be searched.
+         *
+         * @param keywords is the query that users have typed.
+         */
+        void onSearch(String keywords);
+    }
+
+    /**
+     * Handler of the main thread, which runs the debounced search.
+     */
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Listener of the live search.
+     */
+    private final Listener mListener;
+
+    /**
+     * Query that waits for users to pause, or null if there is none.
+     */
+    private String mPendingKeywords;
+
+    /**
+     * Search the pending query, once users have paused on it.
+     */
+    private final Runnable mSearchRunnable = new Runnable() {
+        @Override
+        public void run() {
+            String keywords = mPendingKeywords;
+            mPendingKeywords = null;
+            if (keywords != null) {
+                mListener.onSearch(keywords);
+            }
+        }
+    };
+
+    /**
+     * Create a new {@link LiveSearch} object.
+     *
+     * @param listener is the listener of the live search.
+     */
+    public LiveSearch(Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Called when the query text changes. The search of the previous text is dropped
+     * if it has not started, and the new text is searched after the debounce delay.
+     *
+     * @param keywords is the query that users have typed so far.
+     */
+    public void onQueryChanged(String keywords) {
+        cancel();
+        String normalized = SearchCache.normalize(keywords);
+        if (normalized.length() < MIN_QUERY_LENGTH) {
+            return;
+        }
+        mPendingKeywords = keywords;
+        mHandler.postDelayed(mSearchRunnable, DEBOUNCE_DELAY_MILLIS);
+        showProvisionalResult(keywords, normalized);
+    }
+
+    /**
+     * Drop the query that waits for users to pause, such as when it has been submitted.
+     */
+    public void cancel() {
+        mPendingKeywords = null;
+        mHandler.removeCallbacks(mSearchRunnable);
+    }
+
+    /**
+     * Helper method that filter the cached first page of the longest shorter query,
+     * and report the books that match the new query.
+     */
+    private void showProvisionalResult(String keywords, String normalized) {
+        SearchCache searchCache = SearchCache.getInstance();
+        // Try the longest prefix first, whose books are the closest to the new query.
+        for (int end = normalized.length() - 1; end >= MIN_QUERY_LENGTH; end--) {
+            String prefix = normalized.substring(0, end).trim();
+            if (prefix.length() < MIN_QUERY_LENGTH) {
+                continue;
+            }
+            SearchCache.Entry entry = getFirstPage(searchCache, prefix);
+            if (entry == null) {
+                continue;
+            }
+            List<Book> books = filter(entry.getBooks(), normalized);
+            if (!books.isEmpty()) {
+                mListener.onProvisionalResult(keywords, books, entry.getResultCount());
+            }
+            return;
+        }
+    }
+
+    /**
+     * Return the largest cached first page of the query, or null if there is none.
+     * The number of books per request is part of the key of the cached pages, and it changes
+     * with the {@link PageSizePolicy}, so every page size is tried.
+     */
+    private static SearchCache.Entry getFirstPage(SearchCache searchCache, String keywords) {
+        int[] pageSizes = PageSizePolicy.PAGE_SIZES;
+        for (int index = pageSizes.length - 1; index >= 0; index--) {
+            if (searchCache.contains(keywords, 0, pageSizes[index])) {
+                SearchCache.Entry entry = searchCache.get(keywords, 0, pageSizes[index]);
+                if (entry != null) {
+                    return entry;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Return the books whose title, subtitle or author contains every word of the query.
+     *
+     * @param books    is the books to filter.
+     * @param keywords is the normalized query.
+     */
+    private static List<Book> filter(List<Book> books, String keywords) {
+        String[] words = keywords.split(" ");
+        List<Book> matches = new ArrayList<>();
+        for (Book book : books) {
+            String text = SearchCache.normalize(joinParts(book.getTitle(),
+                    book.peekSubtitle(), book.getAuthor()));
+            boolean matched = true;
+            for (String word : words) {
+                if (!text.contains(word)) {
+                    matched = false;
+                    break;
+                }
+            }
+            if (matched) {
+                matches.add(book);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Helper method that join the parts of a book with spaces, skipping the missing ones,
+     * so that a missing part never matches the word "null".
+     */
+    private static String joinParts(String... parts) {
+        StringBuilder builder = new StringBuilder();
+        for (String part : parts) {
+            if (part != null) {
+                builder.append(part).append(' ');
+            }
+        }
+        return builder.toString();
+    }
+}
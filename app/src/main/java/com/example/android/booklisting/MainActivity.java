@@ -3,13 +3,14 @@ package com.example.android.booklisting;
 import android.app.LoaderManager;
 import android.content.Context;
 import android.content.Loader;
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
-import android.net.Uri;
 import android.os.Bundle;
+import android.preference.PreferenceManager;
 import android.support.v4.content.ContextCompat;
-import android.support.v4.widget.NestedScrollView;
 import android.support.v4.widget.SwipeRefreshLayout;
 import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.DefaultItemAnimator;
@@ -19,30 +20,28 @@ import android.view.Gravity;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
+import android.view.ViewGroup;
 import android.widget.LinearLayout;
 import android.widget.SearchView;
 import android.widget.TextView;
 import android.widget.Toast;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class MainActivity extends AppCompatActivity {
 
     /**
-     * URL for book data from the DOUBAN data set.
-     */
-    private static final String DOUBAN_REQUEST_URL = "https://api.douban.com/v2/book/search";
-
-    /**
-     * Constant value for the number of books per request.
+     * Result offset for each request.
      */
-    private static final int NUMBER_PER_REQUEST = 10;
+    private int resultOffset = 0;
 
     /**
-     * Result offset for each request.
+     * Number of books per request of the page on screen, which is chosen by the
+     * {@link PageSizePolicy} whenever users move to another page.
      */
-    private int resultOffset = 0;
+    private int requestCount = PageSizePolicy.DEFAULT_PAGE_SIZE;
 
     /**
      * Request keywords fetch from users input.
@@ -51,10 +50,86 @@ public class MainActivity extends AppCompatActivity {
 
     /**
      * Constant value for the book loader ID, which can be any integer.
-     * There are two ID, one for book, the other for image.
      */
     private static final int BOOK_LOADER_ID = 1;
-    private static final int IMAGE_LOADER_ID = 2;
+
+    /**
+     * Constant value for the loader ID of the pages added by infinite scroll.
+     */
+    private static final int PAGE_LOADER_ID = 3;
+
+    /**
+     * Max number of pages kept in memory in the infinite scroll mode.
+     */
+    private static final int MAX_WINDOW_PAGES = 5;
+
+    /**
+     * Constant value for the first loader ID of the covers. Each page in the window loads
+     * its covers with its own loader, from IMAGE_LOADER_ID to
+     * IMAGE_LOADER_ID + MAX_WINDOW_PAGES - 1, so that a page that is added does not cancel
+     * the covers of the pages that are still loading theirs.
+     */
+    private static final int IMAGE_LOADER_ID = 4;
+
+    /**
+     * Result offset of a cover loader that loads no page.
+     */
+    private static final int NO_START = -1;
+
+    /**
+     * Result offset of the page whose covers each cover loader loads, or {@link #NO_START}.
+     */
+    private final int[] mImageLoaderStarts = new int[MAX_WINDOW_PAGES];
+
+    /**
+     * Distance in pixels from the end of the list at which the next page begins to load.
+     */
+    private static final int LOAD_MORE_DISTANCE = 1200;
+
+    /**
+     * Key of the infinite scroll preference.
+     */
+    private static final String PREF_INFINITE_SCROLL = "infinite_scroll";
+
+    /**
+     * Key of the search as you type preference.
+     */
+    private static final String PREF_LIVE_SEARCH = "live_search";
+
+    /**
+     * Whether the list is scrolled infinitely, instead of being swiped page by page.
+     */
+    private boolean infiniteScroll;
+
+    /**
+     * Sliding window of the pages on screen in the infinite scroll mode.
+     */
+    private PageWindow mPageWindow = new PageWindow(MAX_WINDOW_PAGES);
+
+    /**
+     * Whether a page is being added by infinite scroll.
+     */
+    private boolean pageLoading;
+
+    /**
+     * Whether the provisional list of the live search is on screen instead of a page.
+     */
+    private boolean provisionalShown;
+
+    /**
+     * Whether the query is searched as users type, instead of only when it is submitted.
+     */
+    private boolean liveSearch;
+
+    /**
+     * Debouncer of the query that users type in the live search mode.
+     */
+    private LiveSearch mLiveSearch;
+
+    /**
+     * Latest page of the search result delivered to the screen, or null before the first one.
+     */
+    private SearchResult mSearchResult;
 
     /**
      * {@link LoaderManager} for the both {@link BookLoader} and {@link ImageLoader}.
@@ -78,16 +153,85 @@ public class MainActivity extends AppCompatActivity {
      */
     private BookAdapter mAdapter;
 
+    /**
+     * Prefetcher of the pages next to the page on screen.
+     */
+    private Prefetcher mPrefetcher;
+
+    /**
+     * Listener that pushes each cover to the adapter of this activity as soon as it is loaded.
+     * It is attached to every {@link ImageLoader} that this activity uses, including the
+     * loaders that it takes over from the previous activity.
+     */
+    private final ImageLoader.OnImageLoadedListener mOnImageLoadedListener =
+            new ImageLoader.OnImageLoadedListener() {
+                @Override
+                public void onImageLoaded(String imageUrl, Drawable drawable) {
+                    mAdapter.setImage(imageUrl, drawable);
+                }
+            };
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
 
+        // Get the shared prefetcher of the next and the previous pages.
+        mPrefetcher = Prefetcher.getInstance(this);
+
+        // No cover loader loads a page yet.
+        Arrays.fill(mImageLoaderStarts, NO_START);
+
+        // Read whether the infinite scroll mode is turned on.
+        infiniteScroll = PreferenceManager.getDefaultSharedPreferences(this)
+                .getBoolean(PREF_INFINITE_SCROLL, false);
+        // Read whether the search as you type mode is turned on.
+        liveSearch = PreferenceManager.getDefaultSharedPreferences(this)
+                .getBoolean(PREF_LIVE_SEARCH, false);
+        // Create the live search, which searches the query once users pause typing.
+        mLiveSearch = new LiveSearch(new LiveSearch.Listener() {
+            @Override
+            public void onProvisionalResult(String keywords, List<Book> books, int resultCount) {
+                showProvisionalResult(books);
+            }
+
+            @Override
+            public void onSearch(String keywords) {
+                if (!isConnected()) {
+                    return;
+                }
+                // Skip the query that is already on screen, such as when users type and then
+                // delete a character, but show its page again in place of the provisional list
+                // of the longer query.
+                if (resultOffset == 0 && requestKeywords != null
+                        && SearchCache.normalize(keywords)
+                        .equals(SearchCache.normalize(requestKeywords))) {
+                    if (provisionalShown && mSearchResult != null && !mSearchResult.isEmpty()) {
+                        showSearchResult(mSearchResult);
+                    }
+                    return;
+                }
+                // Set refreshing to true because it begin to fetch new data.
+                swipeContainer.setRefreshing(true);
+                requestKeywords = keywords;
+                resultOffset = 0;
+                requestCount = PageSizePolicy.getInstance().getPageSize();
+                // Restart the book loader, which drops the search of the previous query.
+                restartBookLoader();
+            }
+        });
+
+        // Find a reference to the {@link RecyclerView} in the layout.
+        final RecyclerView recyclerView = findViewById(R.id.list);
+        // Inflate the header and the footer, which are shown as items of the list.
+        View headerView = getLayoutInflater().inflate(R.layout.list_header, recyclerView, false);
+        View footerView = getLayoutInflater().inflate(R.layout.list_footer, recyclerView, false);
+
         // Find the reference to each view.
-        resultCountView = findViewById(R.id.result_count);
-        resultPageView = findViewById(R.id.result_page);
-        bottomLeftView = findViewById(R.id.list_bottom_left);
-        bottomRightView = findViewById(R.id.list_bottom_right);
+        resultCountView = headerView.findViewById(R.id.result_count);
+        resultPageView = headerView.findViewById(R.id.result_page);
+        bottomLeftView = footerView.findViewById(R.id.list_bottom_left);
+        bottomRightView = footerView.findViewById(R.id.list_bottom_right);
         mEmptyStateView = findViewById(R.id.empty_view);
 
         // Set up a onclick listener for empty view to open search view.
@@ -100,17 +244,13 @@ public class MainActivity extends AppCompatActivity {
             }
         });
 
-        // Find a reference to the {@link RecyclerView} in the layout.
-        RecyclerView recyclerView = findViewById(R.id.list);
         // Create an {@link BookAdapter}, whose data source is a list of {@link Book}s.
         // The adapter knows how to create list items for each item in the list.
-        mAdapter = new BookAdapter(this, new ArrayList<Book>());
+        mAdapter = new BookAdapter(this, new ArrayList<Book>(), headerView, footerView);
         // Setup the DefaultItemAnimator for the ItemAnimator of RecyclerView.
         recyclerView.setItemAnimator(new DefaultItemAnimator());
         // Setup the LinearLayoutManager for the LayoutManager of RecyclerView.
         recyclerView.setLayoutManager(new LinearLayoutManager(this));
-        // Set nested scroll to false to get smooth scroll of RecyclerView inside NestedScrollView.
-        recyclerView.setNestedScrollingEnabled(false);
         // Make the {@link RecycleView} use the {@link BookAdapter} created above, so that the
         // {@link RecycleView} will display list items for each {@link Book} in the list.
         recyclerView.setAdapter(mAdapter);
@@ -124,21 +264,21 @@ public class MainActivity extends AppCompatActivity {
         if (savedInstanceState != null) {
             // Restore the saved variables.
             resultOffset = savedInstanceState.getInt("resultOffset");
+            requestCount = savedInstanceState.getInt("requestCount",
+                    PageSizePolicy.DEFAULT_PAGE_SIZE);
             requestKeywords = savedInstanceState.getString("requestKeywords");
             // When request keywords is not null, restore the list.
             if (requestKeywords != null) {
-                // Get a reference to the LoaderManager, in order to interact with loaders.
-                loaderManager = getLoaderManager();
-                // Restart the book loader.
-                loaderManager.restartLoader(BOOK_LOADER_ID, null, new BookLoaderCallback());
+                restoreSearchResult();
             }
         }
 
-        if (!isConnected()) {
+        // When the list has been restored, there is no empty state to show.
+        if (mSearchResult == null && !isConnected()) {
             // If there is no internet connection, display error.
             // Update empty state with no connection error message.
             setEmptyStateView(R.string.no_internet_connection, R.drawable.no_connection);
-        } else if (requestKeywords == null) {
+        } else if (mSearchResult == null && requestKeywords == null) {
             // If users did not input any keywords, display hint.
             // Update empty state with hint message.
             setEmptyStateView(R.string.search_text, R.drawable.search);
@@ -159,14 +299,17 @@ public class MainActivity extends AppCompatActivity {
                             getString(R.string.no_internet_connection), Toast.LENGTH_SHORT);
                     toast.setGravity(Gravity.CENTER, 0, 0);
                     toast.show();
-                } else if (mAdapter.getItemCount() == 0) {
+                } else if (mAdapter.getBookCount() == 0) {
                     // Call setRefreshing(false) to signal refresh has finished.
                     swipeContainer.setRefreshing(false);
                 } else {
-                    // Get a reference to the LoaderManager, in order to interact with loaders.
-                    loaderManager = getLoaderManager();
+                    // In infinite scroll mode, refresh from the first page in the window.
+                    if (infiniteScroll && !mPageWindow.isEmpty()) {
+                        resultOffset = mPageWindow.getFirstStart();
+                    }
+                    requestCount = PageSizePolicy.getInstance().getPageSize();
                     // Restart the book loader.
-                    loaderManager.restartLoader(BOOK_LOADER_ID, null, new BookLoaderCallback());
+                    restartBookLoader();
                 }
             }
         });
@@ -177,13 +320,41 @@ public class MainActivity extends AppCompatActivity {
                 android.R.color.holo_orange_light,
                 android.R.color.holo_red_light);
 
+        // Load more pages when users scroll near either end of the list in infinite scroll mode.
+        recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView v, int dx, int dy) {
+                if (!infiniteScroll || pageLoading || mPageWindow.isEmpty() || !isConnected()) {
+                    return;
+                }
+                int scrollY = v.computeVerticalScrollOffset();
+                int contentHeight = v.computeVerticalScrollRange();
+                if (dy > 0
+                        && scrollY + v.computeVerticalScrollExtent()
+                        >= contentHeight - LOAD_MORE_DISTANCE
+                        && mPageWindow.getNextStart() < getResultCount()) {
+                    // Add the next page after the last page in the window.
+                    loadWindowPage(mPageWindow.getNextStart(), false);
+                } else if (dy < 0 && scrollY <= LOAD_MORE_DISTANCE
+                        && mPageWindow.getFirstStart() > 0) {
+                    // Add the page before the first page in the window again.
+                    loadWindowPage(Math.max(0, mPageWindow.getFirstStart()
+                            - PageSizePolicy.getInstance().getPageSize()), true);
+                }
+            }
+        });
+
         // Find the list bottom LinearLayout and set the swipe touch listener to it.
-        LinearLayout listBottom = findViewById(R.id.list_bottom);
+        LinearLayout listBottom = footerView.findViewById(R.id.list_bottom);
         // Android Studio thinks this LinearLayout is a custom view,
         // and did not override perform click method, therefore the warning below.
         listBottom.setOnTouchListener(new OnSwipeTouchListener(this) {
-            // When users swipe right, fetch last ten books from web api.
+            // When users swipe right, fetch the last page of books from web api.
             public void onSwipeRight() {
+                if (infiniteScroll) {
+                    // Pages are added by scrolling in infinite scroll mode.
+                    return;
+                }
                 if (!isConnected()) {
                     // Set text to list bottom TextView when there is no internet connection.
                     bottomLeftView.setText(R.string.no_internet_connection);
@@ -193,27 +364,50 @@ public class MainActivity extends AppCompatActivity {
                     swipeContainer.setRefreshing(true);
                     // Set the background as the touch feedback.
                     bottomLeftView.setBackgroundResource(R.drawable.gradient_blue_right);
-                    // Fetch data until the list reach the start.
-                    resultOffset -= NUMBER_PER_REQUEST;
-                    loaderManager.restartLoader(BOOK_LOADER_ID, null, new BookLoaderCallback());
+                    // Fetch data until the list reach the start. The page before may overlap
+                    // this one, when the page size has grown since this page was fetched.
+                    requestCount = PageSizePolicy.getInstance().getPageSize();
+                    resultOffset = Math.max(0, resultOffset - requestCount);
+                    restartBookLoader();
                 }
             }
 
-            // When users swipe left, fetch next ten books from web api.
+            // When users swipe left, fetch the next page of books from web api.
             public void onSwipeLeft() {
+                if (infiniteScroll) {
+                    // Pages are added by scrolling in infinite scroll mode.
+                    return;
+                }
                 if (!isConnected()) {
                     // Set text to list bottom TextView when there is no internet connection.
                     bottomLeftView.setText(R.string.no_internet_connection);
                     bottomRightView.setText(R.string.no_internet_connection);
-                } else if (resultOffset == 0 ||
-                        resultOffset <= QueryUtils.resultCount - NUMBER_PER_REQUEST) {
+                } else if (mSearchResult != null && mSearchResult.hasNextPage()) {
                     // Set refreshing to true because it begin to fetch new data.
                     swipeContainer.setRefreshing(true);
                     // Set the background as the touch feedback.
                     bottomRightView.setBackgroundResource(R.drawable.gradient_blue_left);
                     // Fetch data until the list reach the end.
-                    resultOffset += NUMBER_PER_REQUEST;
-                    loaderManager.restartLoader(BOOK_LOADER_ID, null, new BookLoaderCallback());
+                    resultOffset = mSearchResult.getNextStart();
+                    requestCount = PageSizePolicy.getInstance().getPageSize();
+                    restartBookLoader();
+                }
+            }
+
+            // When users begin to drag right, fetch the last page before the fling ends.
+            public void onDragRightStart() {
+                if (isConnected() && resultOffset != 0) {
+                    int count = PageSizePolicy.getInstance().getPageSize();
+                    mPrefetcher.prefetchNow(requestKeywords, Math.max(0, resultOffset - count),
+                            count, getResultCount());
+                }
+            }
+
+            // When users begin to drag left, fetch the next page before the fling ends.
+            public void onDragLeftStart() {
+                if (isConnected() && mSearchResult != null) {
+                    mPrefetcher.prefetchNow(requestKeywords, mSearchResult.getNextStart(),
+                            PageSizePolicy.getInstance().getPageSize(), getResultCount());
                 }
             }
         });
@@ -227,16 +421,174 @@ public class MainActivity extends AppCompatActivity {
         // This bundle will be passed to onCreate if the process is
         // killed and restarted.
         savedInstanceState.putInt("resultOffset", resultOffset);
+        savedInstanceState.putInt("requestCount", requestCount);
         savedInstanceState.putString("requestKeywords", requestKeywords);
+        // Keep the page on screen on disk as well, in case the process is killed.
+        if (mSearchResult != null) {
+            ResultSnapshot.save(this, mSearchResult);
+        }
 
         super.onSaveInstanceState(savedInstanceState);
     }
 
+    /**
+     * Keep the page on screen in memory while the activity is recreated for a configuration
+     * change, such as a rotation.
+     */
+    @Override
+    public Object onRetainCustomNonConfigurationInstance() {
+        return mSearchResult;
+    }
+
+    /**
+     * Helper method that show the page that was on screen before the activity was recreated,
+     * from memory after a configuration change, or from the snapshot file after process death.
+     * The page is fetched again only when neither of them holds it.
+     * <p>
+     * Only the page at {@link #resultOffset} is kept, so in the infinite scroll mode the window
+     * starts again from the last page that has been loaded, and grows again as users scroll.
+     */
+    private void restoreSearchResult() {
+        // Drop the window page that the previous activity was loading, whose callback would
+        // otherwise deliver into the adapter and the window of the previous activity.
+        loaderManager = getLoaderManager();
+        loaderManager.destroyLoader(PAGE_LOADER_ID);
+
+        SearchResult result = (SearchResult) getLastCustomNonConfigurationInstance();
+        if (result == null || !result.getKeywords().equals(requestKeywords)
+                || result.getStart() != resultOffset) {
+            result = ResultSnapshot.read(this, requestKeywords, resultOffset);
+        }
+        takeOverCoverLoaders(result);
+        if (result == null || result.isEmpty()) {
+            // Restart the book loader.
+            restartBookLoader();
+            return;
+        }
+        // Drop the loader of the previous activity, which would otherwise deliver again.
+        loaderManager.destroyLoader(BOOK_LOADER_ID);
+        showSearchResult(result);
+    }
+
+    /**
+     * Helper method that keep the cover loader of the previous activity that loads the covers
+     * of the restored page, which {@link #loadCovers} attaches to this activity, and drop the
+     * other cover loaders, which would otherwise push covers to the previous activity.
+     *
+     * @param result is the restored page, or null if there is none.
+     */
+    private void takeOverCoverLoaders(SearchResult result) {
+        boolean takenOver = false;
+        for (int slot = 0; slot < MAX_WINDOW_PAGES; slot++) {
+            ImageLoader imageLoader = (ImageLoader)
+                    loaderManager.<List<Drawable>>getLoader(IMAGE_LOADER_ID + slot);
+            if (imageLoader == null) {
+                continue;
+            }
+            if (!takenOver && result != null && isLoadingCovers(imageLoader,
+                    result.getImageUrls())) {
+                mImageLoaderStarts[slot] = resultOffset;
+                takenOver = true;
+            } else {
+                loaderManager.destroyLoader(IMAGE_LOADER_ID + slot);
+            }
+        }
+    }
+
+    /**
+     * Helper method that tell whether the cover loader loads or has loaded the given covers,
+     * and has not been canceled.
+     */
+    private static boolean isLoadingCovers(ImageLoader imageLoader, List<String> imageUrls) {
+        return imageLoader != null && !imageLoader.isCanceled()
+                && imageLoader.getImageUrls().equals(imageUrls);
+    }
+
+    /**
+     * Helper method that show a page of the search result, which has books,
+     * and load its covers, which are answered from the image caches when they are there.
+     */
+    private void showSearchResult(SearchResult result) {
+        // Start a new window of pages from this page.
+        mPageWindow.clear();
+        pageLoading = false;
+        provisionalShown = false;
+
+        // Replace the list of book through adapter, which only updates the books
+        // that have changed, and keep the page info of the result.
+        mSearchResult = result;
+        mAdapter.submitList(result.getBooks());
+        mPageWindow.appendPage(resultOffset, result.getBooks());
+
+        // Hide empty state view.
+        mEmptyStateView.setVisibility(View.GONE);
+        // Set the result count to the TextView.
+        setResultCount();
+        // Set the result page to the TextView.
+        setResultPage();
+        // Set the bottom line text to the TextView.
+        setBottomLineText();
+
+        // Starts a new or restarts an existing Loader of book images.
+        loadCovers(resultOffset, result.getImageUrls());
+    }
+
+    /**
+     * Helper method that load the covers of a page in the window with a loader of its own,
+     * and drop the cover loaders of the pages that have left the window.
+     * The page must have been added to the window already.
+     *
+     * @param start     is the result offset of the page.
+     * @param imageUrls is the cover URLs of the page, from its {@link SearchResult}.
+     */
+    private void loadCovers(int start, List<String> imageUrls) {
+        int keptSlot = NO_START;
+        for (int slot = 0; slot < MAX_WINDOW_PAGES; slot++) {
+            int slotStart = mImageLoaderStarts[slot];
+            if (slotStart == NO_START) {
+                continue;
+            }
+            if (slotStart == start && keptSlot == NO_START && isLoadingCovers((ImageLoader)
+                    loaderManager.<List<Drawable>>getLoader(IMAGE_LOADER_ID + slot), imageUrls)) {
+                // Keep the loader that already loads these covers.
+                keptSlot = slot;
+            } else if (slotStart == start || !mPageWindow.contains(slotStart)) {
+                // Stop downloading the covers that are no longer on screen.
+                loaderManager.destroyLoader(IMAGE_LOADER_ID + slot);
+                mImageLoaderStarts[slot] = NO_START;
+            }
+        }
+        if (keptSlot != NO_START) {
+            // Deliver the covers of the kept loader to this activity, at once for the covers
+            // that have been loaded already.
+            ImageLoader imageLoader = (ImageLoader) loaderManager.<List<Drawable>>initLoader(
+                    IMAGE_LOADER_ID + keptSlot, null, new ImageLoaderCallback(imageUrls));
+            imageLoader.setOnImageLoadedListener(mOnImageLoadedListener);
+            return;
+        }
+        // The window has at most MAX_WINDOW_PAGES pages, one of which is this one,
+        // so at least one loader is free.
+        int freeSlot = 0;
+        while (mImageLoaderStarts[freeSlot] != NO_START) {
+            freeSlot++;
+        }
+        mImageLoaderStarts[freeSlot] = start;
+        loaderManager.restartLoader(IMAGE_LOADER_ID + freeSlot, null,
+                new ImageLoaderCallback(imageUrls));
+    }
+
+    @Override
+    protected void onDestroy() {
+        // Drop the query that waits for users to pause, which belongs to this activity.
+        mLiveSearch.cancel();
+        super.onDestroy();
+    }
+
     /**
      * This inner class is for {@link BookLoader},
      * which implements its {@link LoaderManager.LoaderCallbacks}.
      */
-    private class BookLoaderCallback implements LoaderManager.LoaderCallbacks<List<Book>> {
+    private class BookLoaderCallback implements LoaderManager.LoaderCallbacks<SearchResult> {
         /**
          * This method will be called when it needs to create a new {@link Loader}.
          *
@@ -245,57 +597,52 @@ public class MainActivity extends AppCompatActivity {
          * @return a new custom AsyncTaskLoader.
          */
         @Override
-        public Loader<List<Book>> onCreateLoader(int i, Bundle bundle) {
-
-            // Use {@link Uri.Builder} to build a request url.
-            Uri baseUri = Uri.parse(DOUBAN_REQUEST_URL);
-            Uri.Builder uriBuilder = baseUri.buildUpon();
-
-            uriBuilder.appendQueryParameter("q", requestKeywords);
-            uriBuilder.appendQueryParameter("start", Integer.toString(resultOffset));
-            uriBuilder.appendQueryParameter("count", Integer.toString(NUMBER_PER_REQUEST));
-
-            return new BookLoader(getApplicationContext(), uriBuilder.toString());
+        public Loader<SearchResult> onCreateLoader(int i, Bundle bundle) {
+            return new BookLoader(getApplicationContext(),
+                    requestKeywords, resultOffset, requestCount);
         }
 
         /**
          * This method will be called when the {@link Loader} finish loading in the working thread.
          *
          * @param loader is an instance of the {@link Loader}.
-         * @param books  is the result of the loading in the working thread.
+         * @param result is the result of the loading in the working thread.
          */
         @Override
-        public void onLoadFinished(Loader<List<Book>> loader, List<Book> books) {
-            // Clear the adapter of previous book data.
-            mAdapter.clear();
+        public void onLoadFinished(Loader<SearchResult> loader, SearchResult result) {
+            List<Book> books = result == null ? null : result.getBooks();
 
             // Call setRefreshing(false) to signal refresh has finished.
             swipeContainer.setRefreshing(false);
 
             // If there is a valid list of {@link Book}s, then add them to the adapter's data set.
             if (books != null && !books.isEmpty()) {
-                // Add the list of book through adapter.
-                mAdapter.addAll(books);
+                showSearchResult(result);
 
                 // Scroll to the top after refreshing data.
-                NestedScrollView scrollView = findViewById(R.id.scroll_view);
-                scrollView.scrollTo(0, 0);
-
-                // Hide empty state view.
-                mEmptyStateView.setVisibility(View.GONE);
-                // Set the result count to the TextView.
-                setResultCount();
-                // Set the result page to the TextView.
-                setResultPage();
-                // Set the bottom line text to the TextView.
-                setBottomLineText();
-
-                // Starts a new or restarts an existing Loader of book images.
-                loaderManager.restartLoader(IMAGE_LOADER_ID, null, new ImageLoaderCallback());
-            } else if (!isConnected()) {
+                RecyclerView recyclerView = findViewById(R.id.list);
+                recyclerView.scrollToPosition(0);
+
+                // Fetch the pages next to this one in the background.
+                if (isConnected()) {
+                    mPrefetcher.prefetchAround(requestKeywords, resultOffset,
+                            result.getNextStart(), PageSizePolicy.getInstance().getPageSize(),
+                            getResultCount());
+                }
+                return;
+            }
+
+            // Start a new window of pages, which has no page.
+            mPageWindow.clear();
+            pageLoading = false;
+            if (!isConnected()) {
+                // Clear the adapter of previous book data.
+                mAdapter.clear();
                 // Set no internet connection empty state.
                 setEmptyStateView(R.string.no_internet_connection, R.drawable.no_connection);
             } else {
+                // Clear the adapter of previous book data.
+                mAdapter.clear();
                 // Set no book found empty state.
                 setEmptyStateView(R.string.no_book, R.drawable.no_book);
                 // Set other views to gone.
@@ -312,17 +659,218 @@ public class MainActivity extends AppCompatActivity {
          * @param loader is an instance of the {@link Loader}.
          */
         @Override
-        public void onLoaderReset(Loader<List<Book>> loader) {
+        public void onLoaderReset(Loader<SearchResult> loader) {
             // Loader reset, clear out our existing data.
             mAdapter.clear();
         }
     }
 
+    /**
+     * Helper method that restart the book loader, which cancels the load it replaces,
+     * and cancel the covers of the pages on screen, which are being replaced as well.
+     */
+    private void restartBookLoader() {
+        // Get a reference to the LoaderManager, in order to interact with loaders.
+        loaderManager = getLoaderManager();
+        // Stop downloading the covers of the superseded pages.
+        for (int slot = 0; slot < MAX_WINDOW_PAGES; slot++) {
+            ImageLoader imageLoader = (ImageLoader)
+                    loaderManager.<List<Drawable>>getLoader(IMAGE_LOADER_ID + slot);
+            if (imageLoader != null) {
+                imageLoader.cancelLoad();
+            }
+        }
+        loaderManager.restartLoader(BOOK_LOADER_ID, null, new BookLoaderCallback());
+    }
+
+    /**
+     * Helper method that show the books filtered from the cached page of a shorter query,
+     * while the query that users are typing is being searched.
+     *
+     * @param books is the books that match the query.
+     */
+    private void showProvisionalResult(List<Book> books) {
+        // The provisional list is not a page of any search, so forget the window.
+        mPageWindow.clear();
+        pageLoading = false;
+        provisionalShown = true;
+        // Show the covers that are still in memory right away.
+        ImageCache imageCache = ImageCache.getInstance(this);
+        for (Book book : books) {
+            Bitmap bitmap = imageCache.get(book.getImageUrl());
+            if (bitmap != null) {
+                book.setImageResource(new BitmapDrawable(getResources(), bitmap));
+            }
+        }
+        mAdapter.submitList(books);
+        mEmptyStateView.setVisibility(View.GONE);
+        // The page and the bottom line only make sense for the real result.
+        resultPageView.setVisibility(View.GONE);
+        bottomLeftView.setVisibility(View.GONE);
+        bottomRightView.setVisibility(View.GONE);
+    }
+
+    /**
+     * Helper method that load a page into the window of the infinite scroll mode.
+     *
+     * The page before the first page may overlap it, when the page size has grown since then,
+     * and its books that are already in the window are dropped once it is loaded.
+     *
+     * @param start   is the result offset of the page.
+     * @param prepend is whether the page is added before the first page, or after the last page.
+     */
+    private void loadWindowPage(int start, boolean prepend) {
+        pageLoading = true;
+        loaderManager = getLoaderManager();
+        loaderManager.restartLoader(PAGE_LOADER_ID, null, new PageLoaderCallback(start,
+                PageSizePolicy.getInstance().getPageSize(), prepend));
+    }
+
+    /**
+     * Helper method that return the first view on screen of a book whose index in the list
+     * is at least the given one, or null if there is none.
+     *
+     * @param recyclerView   is the list of books.
+     * @param firstBookIndex is the index of the first book that can be returned.
+     */
+    private View findBookView(RecyclerView recyclerView, int firstBookIndex) {
+        for (int index = 0; index < recyclerView.getChildCount(); index++) {
+            View child = recyclerView.getChildAt(index);
+            // The first item of the list is the header.
+            int bookIndex = recyclerView.getChildAdapterPosition(child) - 1;
+            if (bookIndex >= firstBookIndex) {
+                return child;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Helper method that scroll the list, so that the book that moves to the given position
+     * stays where it was on screen.
+     *
+     * @param recyclerView is the list of books.
+     * @param anchor       is the view of the book before the change.
+     * @param newPosition  is the adapter position of the book after the change.
+     */
+    private void keepBookInPlace(RecyclerView recyclerView, View anchor, int newPosition) {
+        // The layout manager lays out the book with its top margin from the given offset.
+        int topMargin = anchor.getLayoutParams() instanceof ViewGroup.MarginLayoutParams
+                ? ((ViewGroup.MarginLayoutParams) anchor.getLayoutParams()).topMargin : 0;
+        ((LinearLayoutManager) recyclerView.getLayoutManager())
+                .scrollToPositionWithOffset(newPosition, anchor.getTop() - topMargin);
+    }
+
+    /**
+     * This inner class is for the {@link BookLoader} of the pages added by infinite scroll,
+     * which implements its {@link LoaderManager.LoaderCallbacks}.
+     */
+    private class PageLoaderCallback implements LoaderManager.LoaderCallbacks<SearchResult> {
+
+        /**
+         * Result offset and the number of books per request of the page.
+         */
+        private final int mStart, mCount;
+
+        /**
+         * Whether the page is added before the first page, or after the last page.
+         */
+        private final boolean mPrepend;
+
+        /**
+         * Request keywords of the page.
+         */
+        private final String mKeywords;
+
+        PageLoaderCallback(int start, int count, boolean prepend) {
+            mStart = start;
+            mCount = count;
+            mPrepend = prepend;
+            mKeywords = requestKeywords;
+        }
+
+        @Override
+        public Loader<SearchResult> onCreateLoader(int i, Bundle bundle) {
+            return new BookLoader(getApplicationContext(),
+                    mKeywords, mStart, mCount);
+        }
+
+        @Override
+        public void onLoadFinished(Loader<SearchResult> loader, SearchResult result) {
+            pageLoading = false;
+            List<Book> books = result == null ? null : result.getBooks();
+            // Ignore the page when it no longer borders the window, such as when the loader
+            // delivers again after the activity restarts, or when a new search has started.
+            if (books == null || books.isEmpty() || mPageWindow.isEmpty()
+                    || !mKeywords.equals(requestKeywords) || mPageWindow.contains(mStart)
+                    || (mPrepend ? mStart >= mPageWindow.getFirstStart()
+                    : mStart != mPageWindow.getNextStart())) {
+                return;
+            }
+
+            RecyclerView recyclerView = findViewById(R.id.list);
+            if (mPrepend) {
+                // Drop the books that are already at the beginning of the window.
+                int firstStart = mPageWindow.getFirstStart();
+                if (mStart + books.size() > firstStart) {
+                    books = books.subList(0, firstStart - mStart);
+                }
+                // Add the page at the beginning, and drop the pages that leave the window.
+                View anchor = findBookView(recyclerView, 0);
+                int anchorPosition = anchor == null ? RecyclerView.NO_POSITION
+                        : recyclerView.getChildAdapterPosition(anchor);
+                int droppedCount = mPageWindow.prependPage(mStart, books);
+                mAdapter.removeRange(mAdapter.getBookCount() - droppedCount, droppedCount);
+                mAdapter.insertAll(0, books);
+                // Keep the books on screen in place, below the inserted books.
+                if (anchorPosition != RecyclerView.NO_POSITION) {
+                    keepBookInPlace(recyclerView, anchor, anchorPosition + books.size());
+                }
+            } else {
+                // Add the page at the end, and drop the pages that leave the window.
+                int droppedCount = mPageWindow.appendPage(mStart, books);
+                mAdapter.insertAll(mAdapter.getBookCount(), books);
+                if (droppedCount > 0) {
+                    // Keep the books on screen in place, below the removed books.
+                    View anchor = findBookView(recyclerView, droppedCount);
+                    int anchorPosition = anchor == null ? RecyclerView.NO_POSITION
+                            : recyclerView.getChildAdapterPosition(anchor);
+                    mAdapter.removeRange(0, droppedCount);
+                    if (anchorPosition != RecyclerView.NO_POSITION) {
+                        keepBookInPlace(recyclerView, anchor, anchorPosition - droppedCount);
+                    }
+                }
+            }
+
+            // Show the page that has just been added, and load its covers, while the pages
+            // before it keep loading theirs.
+            mSearchResult = result;
+            resultOffset = mPrepend ? mPageWindow.getFirstStart() : mPageWindow.getLastStart();
+            setResultPage();
+            loadCovers(mStart, result.getImageUrls());
+        }
+
+        @Override
+        public void onLoaderReset(Loader<SearchResult> loader) {
+            pageLoading = false;
+        }
+    }
+
     /**
      * This inner class is for {@link ImageLoader},
      * which implements its {@link LoaderManager.LoaderCallbacks}.
      */
     private class ImageLoaderCallback implements LoaderManager.LoaderCallbacks<List<Drawable>> {
+
+        /**
+         * Cover URLs of the page, in the same order as its books.
+         */
+        private final List<String> mImageUrls;
+
+        ImageLoaderCallback(List<String> imageUrls) {
+            mImageUrls = imageUrls;
+        }
+
         /**
          * This method will be called when it needs to create a new {@link Loader}.
          *
@@ -332,7 +880,8 @@ public class MainActivity extends AppCompatActivity {
          */
         @Override
         public Loader<List<Drawable>> onCreateLoader(int i, Bundle bundle) {
-            return new ImageLoader(getApplicationContext());
+            // Push each cover to the adapter as soon as it is loaded.
+            return new ImageLoader(getApplicationContext(), mImageUrls, mOnImageLoadedListener);
         }
 
         /**
@@ -351,8 +900,9 @@ public class MainActivity extends AppCompatActivity {
             setBottomLineText();
 
             if (drawables != null && !drawables.isEmpty()) {
-                // Set the drawable resource to the ImageView through adapter.
-                mAdapter.setImage(drawables);
+                // Set the drawable resource that has not been delivered one by one,
+                // such as after the device rotates, to the ImageView through adapter.
+                mAdapter.setImages(((ImageLoader) loader).getImageUrls(), drawables);
             }
         }
 
@@ -363,8 +913,9 @@ public class MainActivity extends AppCompatActivity {
          */
         @Override
         public void onLoaderReset(Loader<List<Drawable>> loader) {
-            // Loader reset, clear out our existing data.
-            mAdapter.clear();
+            // Stop pushing covers to this activity. The books keep the covers that have been
+            // delivered, and the loader of the books clears them when it resets.
+            ((ImageLoader) loader).setOnImageLoadedListener(null);
         }
     }
 
@@ -390,43 +941,80 @@ public class MainActivity extends AppCompatActivity {
         searchView.setQueryHint(getString(R.string.search_hint));
         // Iconify the widget by default.
         searchView.setIconifiedByDefault(false);
+        // Show whether the infinite scroll mode is turned on.
+        menu.findItem(R.id.menu_infinite_scroll).setChecked(infiniteScroll);
+        // Show whether the search as you type mode is turned on.
+        menu.findItem(R.id.menu_live_search).setChecked(liveSearch);
         // Set up the query text listener, so that get the query that users input.
         searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
             @Override
             public boolean onQueryTextSubmit(String query) {
-                // Only when there is internet connection, search data.
-                if (isConnected()) {
-                    // Set refreshing to true because it begin to fetch new data.
-                    swipeContainer.setRefreshing(true);
-                    // Set the query that users input to request keywords.
-                    requestKeywords = query;
-                    // Reset the result offset since this is a new request.
-                    resultOffset = 0;
-                    // Get a reference to the LoaderManager, in order to interact with loaders.
-                    loaderManager = getLoaderManager();
-                    // Restart the book loader.
-                    loaderManager.restartLoader(BOOK_LOADER_ID, null, new BookLoaderCallback());
-                } else if (mAdapter.getItemCount() == 0) {
-                    setEmptyStateView(R.string.no_internet_connection, R.drawable.no_connection);
-                } else {
-                    // To maintain contents that users already get, only make a toast to
+                // The submitted query is searched right away.
+                mLiveSearch.cancel();
+                if (!isConnected()) {
+                    // Search the books stored on the device, and make a toast to
                     // notice users that the device is disconnected.
                     Toast toast = Toast.makeText(getApplicationContext(),
-                            getString(R.string.no_internet_connection), Toast.LENGTH_SHORT);
+                            getString(R.string.offline_search), Toast.LENGTH_SHORT);
                     toast.setGravity(Gravity.CENTER, 0, 0);
                     toast.show();
                 }
+                // Set refreshing to true because it begin to fetch new data.
+                swipeContainer.setRefreshing(true);
+                // Set the query that users input to request keywords.
+                requestKeywords = query;
+                // Reset the result offset since this is a new request.
+                resultOffset = 0;
+                requestCount = PageSizePolicy.getInstance().getPageSize();
+                // Restart the book loader, which answers from the stored books when offline.
+                restartBookLoader();
                 return false;
             }
 
             @Override
             public boolean onQueryTextChange(String newText) {
+                // Search the query as users type, once they pause.
+                if (liveSearch && isConnected()) {
+                    mLiveSearch.onQueryChanged(newText);
+                }
                 return false;
             }
         });
         return true;
     }
 
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        if (item.getItemId() == R.id.menu_infinite_scroll) {
+            // Turn the infinite scroll mode on or off, and remember the choice.
+            infiniteScroll = !item.isChecked();
+            item.setChecked(infiniteScroll);
+            PreferenceManager.getDefaultSharedPreferences(this).edit()
+                    .putBoolean(PREF_INFINITE_SCROLL, infiniteScroll).apply();
+            // Reload the page on screen, so that the list starts over in the new mode.
+            if (requestKeywords != null && isConnected()) {
+                if (!mPageWindow.isEmpty()) {
+                    resultOffset = mPageWindow.getFirstStart();
+                }
+                requestCount = PageSizePolicy.getInstance().getPageSize();
+                swipeContainer.setRefreshing(true);
+                restartBookLoader();
+            }
+            return true;
+        } else if (item.getItemId() == R.id.menu_live_search) {
+            // Turn the search as you type mode on or off, and remember the choice.
+            liveSearch = !item.isChecked();
+            item.setChecked(liveSearch);
+            PreferenceManager.getDefaultSharedPreferences(this).edit()
+                    .putBoolean(PREF_LIVE_SEARCH, liveSearch).apply();
+            if (!liveSearch) {
+                mLiveSearch.cancel();
+            }
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
     /**
      * Helper method that tells whether the device is connect to internet or not.
      *
@@ -443,15 +1031,22 @@ public class MainActivity extends AppCompatActivity {
         return networkInfo != null && networkInfo.isConnected();
     }
 
+    /**
+     * Helper method that return the result count of the whole search on screen.
+     */
+    private int getResultCount() {
+        return mSearchResult == null ? 0 : mSearchResult.getResultCount();
+    }
+
     /**
      * Helper method that set the result count to the TextView.
-     * The data is from {@link QueryUtils} class.
+     * The data is from the latest {@link SearchResult}.
      */
     private void setResultCount() {
-        if (QueryUtils.resultCount == 1) {
+        if (getResultCount() == 1) {
             resultCountView.setText(R.string.result_count_one);
         } else {
-            resultCountView.setText(getString(R.string.result_count_string, QueryUtils.resultCount));
+            resultCountView.setText(getString(R.string.result_count_string, getResultCount()));
         }
         resultCountView.setVisibility(View.VISIBLE);
     }
@@ -460,15 +1055,10 @@ public class MainActivity extends AppCompatActivity {
      * Helper method that set the result page to the TextView.
      */
     private void setResultPage() {
-        // Calculate the current page according to the result offset.
-        int currentPage = resultOffset / 10 + 1;
-        // Calculate the current page according to {@link QueryUtils.resultCount}.
-        int totalPage;
-        if (QueryUtils.resultCount % 10 == 0) {
-            totalPage = QueryUtils.resultCount / 10;
-        } else {
-            totalPage = QueryUtils.resultCount / 10 + 1;
-        }
+        // Calculate the current page and the total page according to the latest
+        // {@link SearchResult}, in the size of its page.
+        int currentPage = mSearchResult == null ? 1 : mSearchResult.getPageNumber();
+        int totalPage = mSearchResult == null ? 0 : mSearchResult.getPageCount();
         resultPageView.setText(getString(R.string.result_page_string, currentPage, totalPage));
         resultPageView.setVisibility(View.VISIBLE);
     }
@@ -478,16 +1068,17 @@ public class MainActivity extends AppCompatActivity {
      * which help users to navigate through each page of book list.
      */
     private void setBottomLineText() {
-        // Only when there are more than ten results, then display the TextView.
-        if (QueryUtils.resultCount > 10) {
+        // Only when there are more than one page and the list is not scrolled infinitely,
+        // then display the TextView.
+        if (mSearchResult != null && mSearchResult.getPageCount() > 1 && !infiniteScroll) {
             // Set the two TextView to visible by default.
             bottomLeftView.setVisibility(View.VISIBLE);
             bottomRightView.setVisibility(View.VISIBLE);
             // If current page is the first page, do not show the left text.
             // If current page is the last page, do not show the right text.
-            if (resultOffset / 10 == 0) {
+            if (!mSearchResult.hasPreviousPage()) {
                 bottomLeftView.setVisibility(View.INVISIBLE);
-            } else if (resultOffset >= QueryUtils.resultCount - NUMBER_PER_REQUEST) {
+            } else if (!mSearchResult.hasNextPage()) {
                 bottomRightView.setVisibility(View.INVISIBLE);
             }
 
@@ -503,7 +1094,7 @@ public class MainActivity extends AppCompatActivity {
                     null, null, null);
             bottomRightView.setBackgroundColor(0);
         } else {
-            // Set the two TextView to gone when there are less than ten results.
+            // Set the two TextView to gone when there is only one page.
             bottomLeftView.setVisibility(View.GONE);
             bottomRightView.setVisibility(View.GONE);
         }
@@ -0,0 +1,274 @@
+package com.example.android.booklisting;
+
+import android.os.Build;
+import android.os.Trace;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Times the phases of the pipeline from a search to the cards on screen, so that a slow page
+ * can be traced to the phase that made it slow.
+ * <p>
+ * Each phase is a section of {@link Trace}, so that it shows up in systrace and Perfetto, and
+ * its durations are kept in a histogram that answers the 50th, 90th and 99th percentiles.
+ * A {@link Listener} may be set to send every duration to a telemetry service.
+ * <p>
+ * A phase is timed on a single thread, between {@link #beginPhase(String)} and
+ * {@link #endPhase(String, long)}, which must be called in a finally block, since the trace
+ * sections of a thread must be nested.
+ */
+public class Metrics {
+
+    /**
+     * A whole search, from the caches or from Internet, in {@link BookLoader}.
+     */
+    public static final String PHASE_SEARCH = "search";
+
+    /**
+     * A search request until its response headers arrive, which covers the DNS lookup,
+     * the TLS handshake and the time to the first byte, in {@link QueryUtils}.
+     */
+    public static final String PHASE_SEARCH_HEADERS = "search.headers";
+
+    /**
+     * The reading and parsing of a search response, which are done together
+     * as the response streams in, in {@link QueryUtils}.
+     */
+    public static final String PHASE_SEARCH_PARSE = "search.parse";
+
+    /**
+     * A single request of a cover, with its headers and body, in {@link CoverFetcher}.
+     */
+    public static final String PHASE_COVER_DOWNLOAD = "cover.download";
+
+    /**
+     * The decoding of a cover into a downsampled bitmap, in {@link CoverFetcher}.
+     */
+    public static final String PHASE_COVER_DECODE = "cover.decode";
+
+    /**
+     * The binding of a book to its card, in {@link BookAdapter}.
+     */
+    public static final String PHASE_BIND = "list.bind";
+
+    /**
+     * Receives the duration of every phase, such as to send it to a telemetry service.
+     * It is called on the thread of the phase, which may be the main thread, so it should
+     * only hand the numbers over.
+     */
+    public interface Listener {
+
+        /**
+         * Called when a phase has ended.
+         *
+         * @param phase          is the name of the phase, one of the PHASE constants.
+         * @param durationMicros is the duration of the phase in microseconds.
+         */
+        void onPhaseRecorded(String phase, long durationMicros);
+    }
+
+    /**
+     * The percentiles of a phase, at the time they have been taken.
+     */
+    public static final class Summary {
+
+        private final String mPhase;
+        private final long mCount;
+        private final long mP50Micros;
+        private final long mP90Micros;
+        private final long mP99Micros;
+
+        private Summary(String phase, long count, long p50Micros, long p90Micros,
+                        long p99Micros) {
+            mPhase = phase;
+            mCount = count;
+            mP50Micros = p50Micros;
+            mP90Micros = p90Micros;
+            mP99Micros = p99Micros;
+        }
+
+        /**
+         * Return the name of the phase.
+         */
+        public String getPhase() {
+            return mPhase;
+        }
+
+        /**
+         * Return the number of durations that have been recorded.
+         */
+        public long getCount() {
+            return mCount;
+        }
+
+        /**
+         * Return the 50th, 90th and 99th percentiles in microseconds.
+         */
+        public long getP50Micros() {
+            return mP50Micros;
+        }
+
+        public long getP90Micros() {
+            return mP90Micros;
+        }
+
+        public long getP99Micros() {
+            return mP99Micros;
+        }
+
+        @Override
+        public String toString() {
+            return mPhase + ": count=" + mCount + " p50=" + mP50Micros + "us p90="
+                    + mP90Micros + "us p99=" + mP99Micros + "us";
+        }
+    }
+
+    /**
+     * Histogram of the durations of a phase, in buckets that grow exponentially, so that
+     * microseconds and seconds are both kept within about 19% with a fixed memory.
+     * It is package-private for the unit tests.
+     */
+    static final class Histogram {
+
+        /**
+         * Number of buckets for each doubling of the duration.
+         */
+        private static final int BUCKETS_PER_DOUBLING = 4;
+
+        /**
+         * Number of buckets, which go up to 2^32 microseconds, or more than an hour.
+         */
+        private static final int BUCKET_COUNT = 32 * BUCKETS_PER_DOUBLING;
+
+        /**
+         * Number of durations in each bucket. Bucket i holds the durations from
+         * 2^(i/4) to 2^((i+1)/4) microseconds.
+         */
+        private final long[] mCounts = new long[BUCKET_COUNT];
+
+        /**
+         * Number of durations that have been recorded.
+         */
+        private long mTotalCount;
+
+        void record(long durationMicros) {
+            int bucket = 0;
+            if (durationMicros > 1) {
+                bucket = (int) (Math.log(durationMicros) / Math.log(2) * BUCKETS_PER_DOUBLING);
+            }
+            mCounts[Math.min(bucket, BUCKET_COUNT - 1)]++;
+            mTotalCount++;
+        }
+
+        /**
+         * Return the upper bound of the bucket that holds the given percentile,
+         * or 0 if there is no duration.
+         */
+        long getPercentile(double percentile) {
+            long rank = (long) Math.ceil(percentile * mTotalCount);
+            long count = 0;
+            for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+                count += mCounts[bucket];
+                if (count >= rank && count > 0) {
+                    return (long) Math.ceil(
+                            Math.pow(2, (bucket + 1) / (double) BUCKETS_PER_DOUBLING));
+                }
+            }
+            return 0;
+        }
+
+        Summary getSummary(String phase) {
+            return new Summary(phase, mTotalCount, getPercentile(0.5), getPercentile(0.9),
+                    getPercentile(0.99));
+        }
+    }
+
+    /**
+     * Histograms of the phases, by their name, in the order the phases were first recorded.
+     */
+    private static final Map<String, Histogram> HISTOGRAMS = new LinkedHashMap<>();
+
+    /**
+     * Listener of the durations, which may be null.
+     */
+    private static volatile Listener sListener;
+
+    /**
+     * Create a private constructor because no one should ever create a {@link Metrics} object.
+     * This class is only meant to hold static variables and methods.
+     */
+    private Metrics() {
+    }
+
+    /**
+     * Set the listener that receives the duration of every phase, or null to remove it.
+     */
+    public static void setListener(Listener listener) {
+        sListener = listener;
+    }
+
+    /**
+     * Begin a phase on the current thread.
+     *
+     * @param phase is the name of the phase, one of the PHASE constants.
+     * @return the start time, which is given back to {@link #endPhase(String, long)}.
+     */
+    public static long beginPhase(String phase) {
+        // Trace sections have been added in API 18.
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            Trace.beginSection(phase);
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * End the phase that has been begun last on the current thread, and record its duration.
+     *
+     * @param phase      is the name of the phase, which has been given to {@link #beginPhase}.
+     * @param startNanos is the start time returned by {@link #beginPhase}.
+     */
+    public static void endPhase(String phase, long startNanos) {
+        long durationMicros = (System.nanoTime() - startNanos) / 1000;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            Trace.endSection();
+        }
+        synchronized (HISTOGRAMS) {
+            Histogram histogram = HISTOGRAMS.get(phase);
+            if (histogram == null) {
+                histogram = new Histogram();
+                HISTOGRAMS.put(phase, histogram);
+            }
+            histogram.record(durationMicros);
+        }
+        Listener listener = sListener;
+        if (listener != null) {
+            listener.onPhaseRecorded(phase, durationMicros);
+        }
+    }
+
+    /**
+     * Return the percentiles of the given phase, or null if it has never been recorded.
+     */
+    public static Summary getSummary(String phase) {
+        synchronized (HISTOGRAMS) {
+            Histogram histogram = HISTOGRAMS.get(phase);
+            return histogram == null ? null : histogram.getSummary(phase);
+        }
+    }
+
+    /**
+     * Return the percentiles of every phase that has been recorded.
+     */
+    public static List<Summary> getSummaries() {
+        synchronized (HISTOGRAMS) {
+            List<Summary> summaries = new ArrayList<>();
+            for (Map.Entry<String, Histogram> entry : HISTOGRAMS.entrySet()) {
+                summaries.add(entry.getValue().getSummary(entry.getKey()));
+            }
+            return summaries;
+        }
+    }
+}
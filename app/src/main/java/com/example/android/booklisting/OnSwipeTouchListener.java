@@ -30,12 +30,36 @@ public class OnSwipeTouchListener implements OnTouchListener {
 
         private static final int SWIPE_THRESHOLD = 10;
         private static final int SWIPE_VELOCITY_THRESHOLD = 10;
+        private static final int DRAG_START_THRESHOLD = 24;
+
+        // Whether the start of the horizontal drag has been reported for the current gesture.
+        private boolean mDragStartReported;
 
         @Override
         public boolean onDown(MotionEvent e) {
+            mDragStartReported = false;
             return true;
         }
 
+        @Override
+        public boolean onScroll(MotionEvent e1, MotionEvent e2, float distanceX, float distanceY) {
+            if (mDragStartReported || e1 == null || e2 == null) {
+                return false;
+            }
+            float diffY = e2.getY() - e1.getY();
+            float diffX = e2.getX() - e1.getX();
+            // Report the drag as soon as it is clearly horizontal, before the fling ends.
+            if (Math.abs(diffX) > Math.abs(diffY) && Math.abs(diffX) > DRAG_START_THRESHOLD) {
+                mDragStartReported = true;
+                if (diffX > 0) {
+                    onDragRightStart();
+                } else {
+                    onDragLeftStart();
+                }
+            }
+            return false;
+        }
+
         @Override
         public boolean onFling(MotionEvent e1, MotionEvent e2, float velocityX, float velocityY) {
             boolean result = false;
@@ -63,6 +87,12 @@ public class OnSwipeTouchListener implements OnTouchListener {
     public void onSwipeRight() {
     }
 
+    public void onDragRightStart() {
+    }
+
+    public void onDragLeftStart() {
+    }
+
     public void onSwipeLeft() {
     }
 }
@@ -0,0 +1,103 @@
+package com.example.android.booklisting;
+
+/**
+ * Chooses the number of books per request from the timings of the recent search requests.
+ * <p>
+ * Every request reports its latency, which is the time until the response headers arrive,
+ * and how fast its body was received. The policy keeps an exponentially weighted average of
+ * both, and picks the largest page size that is expected to arrive within a time budget,
+ * so that a poor link asks for fewer books and paints sooner, and a fast link asks for more
+ * books and makes fewer round trips.
+ */
+public class PageSizePolicy {
+
+    /**
+     * Page sizes that can be chosen, in ascending order.
+     */
+    public static final int[] PAGE_SIZES = {5, 10, 20, 40};
+
+    /**
+     * Page size used before any request has been measured.
+     */
+    public static final int DEFAULT_PAGE_SIZE = 10;
+
+    /**
+     * Time in milliseconds that a page is expected to arrive within.
+     */
+    private static final long TARGET_PAGE_MILLIS = 1500;
+
+    /**
+     * Weight of the newest sample in the averages.
+     */
+    private static final double SAMPLE_WEIGHT = 0.3;
+
+    /**
+     * The single instance shared by every search of the process.
+     */
+    private static final PageSizePolicy INSTANCE = new PageSizePolicy();
+
+    /**
+     * Average latency in milliseconds, body throughput in bytes per second,
+     * and body size per book in bytes, or -1 before the first sample.
+     */
+    private double mLatencyMillis = -1, mBytesPerSecond = -1, mBytesPerBook = -1;
+
+    /**
+     * Create a package-private constructor because the policy is only meant to be used through
+     * {@link #getInstance()}, apart from the unit tests.
+     */
+    PageSizePolicy() {
+    }
+
+    /**
+     * Return the shared {@link PageSizePolicy}.
+     */
+    public static PageSizePolicy getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Record the timings of a search request whose body has been completely read.
+     *
+     * @param latencyMillis  is the time until the response headers arrived.
+     * @param transferMillis is the time that the body took to be read.
+     * @param bytes          is the number of bytes of the body.
+     * @param bookCount      is the number of books in the body.
+     */
+    public synchronized void recordRequest(long latencyMillis, long transferMillis,
+                                           long bytes, int bookCount) {
+        mLatencyMillis = average(mLatencyMillis, latencyMillis);
+        // A body that arrives in less than a millisecond says nothing about the throughput.
+        if (transferMillis > 0 && bytes > 0) {
+            mBytesPerSecond = average(mBytesPerSecond, bytes * 1000.0 / transferMillis);
+        }
+        if (bookCount > 0) {
+            mBytesPerBook = average(mBytesPerBook, (double) bytes / bookCount);
+        }
+    }
+
+    /**
+     * Return the number of books that the next request should ask for.
+     */
+    public synchronized int getPageSize() {
+        if (mLatencyMillis < 0 || mBytesPerSecond <= 0 || mBytesPerBook < 0) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        // Pick the largest page that is expected to arrive within the budget.
+        for (int index = PAGE_SIZES.length - 1; index > 0; index--) {
+            double expectedMillis = mLatencyMillis
+                    + PAGE_SIZES[index] * mBytesPerBook * 1000 / mBytesPerSecond;
+            if (expectedMillis <= TARGET_PAGE_MILLIS) {
+                return PAGE_SIZES[index];
+            }
+        }
+        return PAGE_SIZES[0];
+    }
+
+    /**
+     * Helper method that add a sample to an exponentially weighted average.
+     */
+    private static double average(double average, double sample) {
+        return average < 0 ? sample : average + SAMPLE_WEIGHT * (sample - average);
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.android.booklisting;
+
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * A sliding window over the pages of a search result, which keeps at most a fixed number of
+ * consecutive pages of {@link Book}s in memory. Pages that leave the window are dropped,
+ * and have to be fetched again when users scroll back to them.
+ */
+public class PageWindow {
+
+    /**
+     * A page of the search result in the window.
+     */
+    private static class Page {
+        final int start;
+        final List<Book> books;
+
+        Page(int start, List<Book> books) {
+            this.start = start;
+            this.books = books;
+        }
+    }
+
+    /**
+     * Max number of pages in the window.
+     */
+    private final int mMaxPages;
+
+    /**
+     * Pages in the window, ordered by their result offset.
+     */
+    private final LinkedList<Page> mPages = new LinkedList<>();
+
+    /**
+     * Create a new {@link PageWindow} object.
+     *
+     * @param maxPages is the max number of pages kept in memory.
+     */
+    public PageWindow(int maxPages) {
+        mMaxPages = Math.max(1, maxPages);
+    }
+
+    /**
+     * Remove every page from the window.
+     */
+    public void clear() {
+        mPages.clear();
+    }
+
+    /**
+     * Return whether the window has no page.
+     */
+    public boolean isEmpty() {
+        return mPages.isEmpty();
+    }
+
+    /**
+     * Return whether the page of the given result offset is in the window.
+     */
+    public boolean contains(int start) {
+        for (Page page : mPages) {
+            if (page.start == start) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Return the result offset of the first page in the window, or 0 if it is empty.
+     */
+    public int getFirstStart() {
+        return mPages.isEmpty() ? 0 : mPages.getFirst().start;
+    }
+
+    /**
+     * Return the result offset of the last page in the window, or 0 if it is empty.
+     */
+    public int getLastStart() {
+        return mPages.isEmpty() ? 0 : mPages.getLast().start;
+    }
+
+    /**
+     * Return the result offset right after the last page in the window.
+     */
+    public int getNextStart() {
+        return mPages.isEmpty() ? 0 : mPages.getLast().start + mPages.getLast().books.size();
+    }
+
+    /**
+     * Add a page after the last page, and drop the first pages that no longer fit.
+     *
+     * @param start is the result offset of the page.
+     * @param books is the books of the page.
+     * @return the number of books dropped from the beginning of the window.
+     */
+    public int appendPage(int start, List<Book> books) {
+        mPages.addLast(new Page(start, books));
+        int droppedCount = 0;
+        while (mPages.size() > mMaxPages) {
+            droppedCount += mPages.removeFirst().books.size();
+        }
+        return droppedCount;
+    }
+
+    /**
+     * Add a page before the first page, and drop the last pages that no longer fit.
+     *
+     * @param start is the result offset of the page.
+     * @param books is the books of the page.
+     * @return the number of books dropped from the end of the window.
+     */
+    public int prependPage(int start, List<Book> books) {
+        mPages.addFirst(new Page(start, books));
+        int droppedCount = 0;
+        while (mPages.size() > mMaxPages) {
+            droppedCount += mPages.removeLast().books.size();
+        }
+        return droppedCount;
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.android.booklisting;
+
+import android.content.Context;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fetches the pages next to the page on screen, and their covers, in the background,
+ * so that turning a page is answered from the {@link SearchCache} and the image caches.
+ */
+public class Prefetcher {
+
+    /**
+     * Default number of pages that are fetched ahead on each side.
+     */
+    private static final int DEFAULT_DEPTH = 1;
+
+    /**
+     * The single instance shared by every activity of the process, so that its thread
+     * outlives a rotation instead of being created again.
+     */
+    private static Prefetcher sInstance;
+
+    /**
+     * Context of the application.
+     */
+    private final Context mContext;
+
+    /**
+     * Search engine that fetches the pages.
+     */
+    private final SearchEngine mSearchEngine;
+
+    /**
+     * Single background thread that runs the prefetches one by one.
+     * Its queue is cleared when the prefetches are superseded.
+     */
+    private final ThreadPoolExecutor mExecutor = new ThreadPoolExecutor(1, 1,
+            0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>());
+
+    /**
+     * Cancellation token of the covers of the queued prefetches, which is canceled
+     * and replaced whenever they are superseded.
+     */
+    private volatile CancellationToken mCoverToken = new CancellationToken();
+
+    /**
+     * Number of pages that are fetched ahead on each side.
+     */
+    private volatile int mDepth = DEFAULT_DEPTH;
+
+    /**
+     * Whether the previous pages are fetched as well as the next pages.
+     */
+    private volatile boolean mPrefetchPrevious = true;
+
+    private Prefetcher(Context context) {
+        mContext = context.getApplicationContext();
+        mSearchEngine = new SearchEngine(mContext);
+    }
+
+    /**
+     * Return the shared {@link Prefetcher}.
+     *
+     * @param context is any context of the application.
+     */
+    public static synchronized Prefetcher getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new Prefetcher(context);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Set the number of pages that are fetched ahead on each side, 0 to turn prefetching off.
+     */
+    public void setDepth(int depth) {
+        mDepth = Math.max(0, depth);
+    }
+
+    /**
+     * Set whether the previous pages are fetched as well as the next pages.
+     */
+    public void setPrefetchPrevious(boolean prefetchPrevious) {
+        mPrefetchPrevious = prefetchPrevious;
+    }
+
+    /**
+     * Fetch the pages around the page on screen, dropping the prefetches that have not started.
+     * The pages before the first one are clamped at the start of the result, in the same way
+     * as the page that users swipe back to.
+     *
+     * @param keywords    is the keywords of the search.
+     * @param start       is the result offset of the page on screen.
+     * @param nextStart   is the result offset of the page after the page on screen.
+     * @param count       is the number of books per request of the pages around.
+     * @param resultCount is the result count of the whole search.
+     */
+    public void prefetchAround(String keywords, int start, int nextStart, int count,
+                               int resultCount) {
+        cancelPrefetches();
+        for (int distance = 1; distance <= mDepth; distance++) {
+            prefetchPage(keywords, nextStart + (distance - 1) * count, count, resultCount);
+            int previousStart = start - distance * count;
+            if (mPrefetchPrevious && previousStart + count > 0) {
+                prefetchPage(keywords, Math.max(0, previousStart), count, resultCount);
+            }
+        }
+    }
+
+    /**
+     * Fetch a single page and its covers, ahead of the other queued prefetches,
+     * such as when users begin to drag towards it.
+     *
+     * @param keywords    is the keywords of the search.
+     * @param start       is the result offset of the page.
+     * @param count       is the number of books per request.
+     * @param resultCount is the result count of the whole search.
+     */
+    public void prefetchNow(String keywords, int start, int count, int resultCount) {
+        if (mDepth > 0) {
+            cancelPrefetches();
+            prefetchPage(keywords, start, count, resultCount);
+        }
+    }
+
+    /**
+     * Drop the prefetches that have not started, and stop the covers that are loading,
+     * so that the covers of the page that users move to are not held up.
+     */
+    private void cancelPrefetches() {
+        mExecutor.getQueue().clear();
+        mCoverToken.cancel();
+        mCoverToken = new CancellationToken();
+        ImageLoader.cancelPrefetches();
+    }
+
+    /**
+     * Queue the prefetch of a page, when it is inside the search result.
+     */
+    private void prefetchPage(final String keywords, final int start, final int count,
+                              int resultCount) {
+        if (keywords == null || start < 0 || start >= resultCount) {
+            return;
+        }
+        final CancellationToken coverToken = mCoverToken;
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                SearchResult result = mSearchEngine.prefetch(keywords, start, count);
+                if (result == null) {
+                    return;
+                }
+                ImageLoader.prefetch(mContext, result.getImageUrls(), coverToken);
+            }
+        });
+    }
+}
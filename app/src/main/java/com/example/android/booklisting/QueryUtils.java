@@ -1,23 +1,27 @@
 package com.example.android.booklisting;
 
-import android.text.TextUtils;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.util.JsonReader;
+import android.util.JsonToken;
 import android.util.Log;
+import android.util.MalformedJsonException;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-
-import java.io.BufferedReader;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.MalformedURLException;
+import java.net.SocketTimeoutException;
 import java.net.URL;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.List;
-
-import javax.net.ssl.HttpsURLConnection;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Helper methods related to requesting and receiving book data from DOUBAN.
@@ -30,14 +34,32 @@ public class QueryUtils {
     private static final String LOG_TAG = QueryUtils.class.getSimpleName();
 
     /**
-     * Result count of the books fetch from Internet.
+     * URL for book data from the DOUBAN data set.
+     */
+    private static final String DOUBAN_REQUEST_URL = "https://api.douban.com/v2/book/search";
+
+    /**
+     * URL of a single book from the DOUBAN data set, which is followed by the id of the book.
+     */
+    private static final String DOUBAN_BOOK_URL = "https://api.douban.com/v2/book/";
+
+    /**
+     * Fields of the books that the list shows, which are the only fields that a search asks
+     * for. The summary, which makes up most of the bytes of a book, is fetched on its own
+     * by {@link #fetchSummary(String, CancellationToken)} when a card is expanded.
      */
-    public static int resultCount;
+    private static final String LIST_FIELDS = "title,subtitle,author,alt,rating,images";
 
     /**
-     * ArrayList that save the image String of the books fetch from Internet.
+     * Merges the concurrent search requests for the same URL.
      */
-    public static List<String> image;
+    private static final SingleFlight<String, Page> SEARCH_FLIGHTS = new SingleFlight<>();
+
+    /**
+     * Single background thread that cancels the search requests which pass their deadline.
+     */
+    private static final ScheduledExecutorService DEADLINE_TIMER =
+            Executors.newSingleThreadScheduledExecutor();
 
     /**
      * Create a private constructor because no one should ever create a {@link QueryUtils} object.
@@ -48,23 +70,177 @@ public class QueryUtils {
     }
 
     /**
-     * Query the DOUBAN data set and return a list of {@link Book} objects.
+     * A page of the search result as it has been parsed, before it becomes a {@link SearchResult}.
+     */
+    private static final class Page {
+
+        /**
+         * Books of the page.
+         */
+        final List<Book> books;
+
+        /**
+         * Result count of the whole search.
+         */
+        final int resultCount;
+
+        Page(List<Book> books, int resultCount) {
+            this.books = books;
+            this.resultCount = resultCount;
+        }
+    }
+
+    /**
+     * Query the DOUBAN data set for a page of the search result over the network,
+     * and return it as a {@link SearchResult}.
+     *
+     * @param keywords is the keywords that users input.
+     * @param start    is the result offset of the page.
+     * @param count    is the number of books per request.
+     * @param token    stops the request when it is canceled, which may be null.
+     * @return the page, or null if the request has failed or been canceled.
+     */
+    public static SearchResult fetchSearchResult(String keywords, int start, int count,
+                                                 CancellationToken token) {
+        Page page = fetchPage(buildRequestUrl(keywords, start, count), token);
+        if (page == null) {
+            return null;
+        }
+        return new SearchResult(keywords, start, count, page.books, page.resultCount, false);
+    }
+
+    /**
+     * Return the request URL string of a page of the search result.
+     *
+     * @param keywords is the keywords that users input.
+     * @param start    is the result offset of the page.
+     * @param count    is the number of books per request.
+     */
+    public static String buildRequestUrl(String keywords, int start, int count) {
+        // Use {@link Uri.Builder} to build a request url.
+        Uri baseUri = Uri.parse(DOUBAN_REQUEST_URL);
+        Uri.Builder uriBuilder = baseUri.buildUpon();
+
+        uriBuilder.appendQueryParameter("q", keywords);
+        uriBuilder.appendQueryParameter("start", Integer.toString(start));
+        uriBuilder.appendQueryParameter("count", Integer.toString(count));
+        uriBuilder.appendQueryParameter("fields", LIST_FIELDS);
+
+        return uriBuilder.toString();
+    }
+
+    /**
+     * Query the DOUBAN data set and return a page of the search result.
+     * Concurrent calls for the same URL share one network call and one parse result,
+     * which is only canceled when every caller has been canceled.
      */
-    public static List<Book> fetchBookData(String requestUrl) {
+    private static Page fetchPage(final String requestUrl, CancellationToken token) {
+        if (requestUrl == null) {
+            return null;
+        }
+        return SEARCH_FLIGHTS.execute(requestUrl, token, new SingleFlight.Work<Page>() {
+            @Override
+            public Page run(CancellationToken sharedToken) {
+                return fetchPageNow(requestUrl, sharedToken);
+            }
+        });
+    }
+
+    /**
+     * Return the number of search requests that have been merged into a running request
+     * for the same URL.
+     */
+    public static int getMergedRequestCount() {
+        return SEARCH_FLIGHTS.getMergedCount();
+    }
+
+    /**
+     * Query the DOUBAN data set over the network and return a page of the search result.
+     * A request that fails for a reason that may go away, such as a timeout, a dropped
+     * connection or an error of the server, is tried again after a jittered backoff,
+     * and every attempt and wait of the page is bounded by its deadline.
+     * Return null if the request has been canceled, so that a partial page is never used.
+     */
+    private static Page fetchPageNow(String requestUrl, CancellationToken token) {
         // Create URL object
         URL url = createUrl(requestUrl);
+        if (url == null) {
+            return null;
+        }
+
+        // The attempts use their own token, which is canceled at the deadline of the page,
+        // as well as when the page is canceled, so that a stuck request is aborted.
+        final CancellationToken attemptToken = new CancellationToken();
+        CancellationToken.OnCancelListener cancelListener =
+                new CancellationToken.OnCancelListener() {
+                    @Override
+                    public void onCancel() {
+                        attemptToken.cancel();
+                    }
+                };
+        token.addOnCancelListener(cancelListener);
+        long deadline = SystemClock.elapsedRealtime() + RetryPolicy.PAGE_DEADLINE_MILLIS;
+        ScheduledFuture<?> deadlineFuture = DEADLINE_TIMER.schedule(new Runnable() {
+            @Override
+            public void run() {
+                attemptToken.cancel();
+            }
+        }, RetryPolicy.PAGE_DEADLINE_MILLIS, TimeUnit.MILLISECONDS);
 
-        // Perform HTTPS request to the URL and receive a JSON response back
-        String jsonResponse = null;
         try {
-            jsonResponse = makeHttpsRequest(url);
-        } catch (IOException e) {
-            Log.e(LOG_TAG, "Problem making the HTTPS request.", e);
+            for (int attempt = 1; ; attempt++) {
+                // Perform HTTPS request to the URL, parse the JSON response as it streams in,
+                // create a page of {@link Book}s and return it.
+                try {
+                    return makeHttpsRequest(url, attemptToken, deadline);
+                } catch (IOException e) {
+                    if (token.isCanceled()) {
+                        Log.d(LOG_TAG, "The book request has been canceled.");
+                        return null;
+                    } else if (attemptToken.isCanceled()) {
+                        Log.e(LOG_TAG, "The book request has passed its deadline.");
+                        return null;
+                    }
+                    Log.e(LOG_TAG, "Problem making the HTTPS request, attempt " + attempt, e);
+                }
+
+                // Wait before the next attempt, unless it could not finish before the deadline.
+                long backoff = RetryPolicy.getBackoffMillis(attempt);
+                if (attempt >= RetryPolicy.MAX_ATTEMPTS
+                        || SystemClock.elapsedRealtime() + backoff >= deadline
+                        || !sleepUnlessCanceled(backoff, attemptToken)) {
+                    return null;
+                }
+            }
+        } finally {
+            deadlineFuture.cancel(false);
+            token.removeOnCancelListener(cancelListener);
         }
+    }
 
-        // Extract relevant fields from the JSON response,
-        // Create a list of {@link Book}s and return it.
-        return extractFeatureFromJson(jsonResponse);
+    /**
+     * Helper method that wait for the given time, unless the token is canceled first.
+     *
+     * @return whether the whole time has passed without the token being canceled.
+     */
+    private static boolean sleepUnlessCanceled(long millis, CancellationToken token) {
+        final CountDownLatch canceled = new CountDownLatch(1);
+        CancellationToken.OnCancelListener cancelListener =
+                new CancellationToken.OnCancelListener() {
+                    @Override
+                    public void onCancel() {
+                        canceled.countDown();
+                    }
+                };
+        token.addOnCancelListener(cancelListener);
+        try {
+            return !canceled.await(millis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            token.removeOnCancelListener(cancelListener);
+        }
     }
 
     /**
@@ -81,176 +257,397 @@ public class QueryUtils {
     }
 
     /**
-     * Make an HTTPS request to the given URL and return a String as the response.
+     * Make an HTTPS request to the given URL and return a page of {@link Book}s,
+     * parsed straight off the response stream. The timeouts follow the latencies that have
+     * been observed, within the time that is left before the deadline.
+     *
+     * @return the page, or null if the request has failed in a way that is not worth retrying.
+     * @throws IOException if the request has failed in a way that may go away on a retry.
      */
-    private static String makeHttpsRequest(URL url) throws IOException {
-        String jsonResponse = "";
+    private static Page makeHttpsRequest(URL url, CancellationToken token, long deadline)
+            throws IOException {
+        Page page = null;
 
-        // If the URL is null, then return early.
-        if (url == null) {
-            return jsonResponse;
-        }
+        long startTime = SystemClock.elapsedRealtime();
+        int remainingMillis = (int) Math.max(1, deadline - startTime);
+        TimeoutPolicy timeoutPolicy = TimeoutPolicy.getInstance();
 
-        HttpsURLConnection urlConnection = null;
-        InputStream inputStream = null;
+        // Use the shared HTTP layer, so that the connection is reused by later requests.
+        HttpClient.Response response = null;
         try {
-            urlConnection = (HttpsURLConnection) url.openConnection();
-            urlConnection.setReadTimeout(10000 /* milliseconds */);
-            urlConnection.setConnectTimeout(15000 /* milliseconds */);
-            urlConnection.setRequestMethod("GET");
-            urlConnection.connect();
+            long headersStartNanos = Metrics.beginPhase(Metrics.PHASE_SEARCH_HEADERS);
+            try {
+                response = HttpClient.get(url,
+                        Math.min(timeoutPolicy.getConnectTimeoutMillis(), remainingMillis),
+                        Math.min(timeoutPolicy.getReadTimeoutMillis(), remainingMillis), token);
+            } finally {
+                Metrics.endPhase(Metrics.PHASE_SEARCH_HEADERS, headersStartNanos);
+            }
+            long headersTime = SystemClock.elapsedRealtime();
+            timeoutPolicy.recordLatency(headersTime - startTime);
 
             // If the request was successful (response code 200),
-            // then read the input stream and parse the response.
-            if (urlConnection.getResponseCode() == 200) {
-                inputStream = urlConnection.getInputStream();
-                jsonResponse = readFromStream(inputStream);
+            // then parse the input stream while it is being received.
+            int responseCode = response.getResponseCode();
+            if (responseCode == 200) {
+                CountingInputStream body = new CountingInputStream(response.getBody());
+                long parseStartNanos = Metrics.beginPhase(Metrics.PHASE_SEARCH_PARSE);
+                try {
+                    page = extractFeatureFromStream(body, token);
+                } finally {
+                    Metrics.endPhase(Metrics.PHASE_SEARCH_PARSE, parseStartNanos);
+                }
+                // Report the timings, so that the size of the next pages suits the link.
+                PageSizePolicy.getInstance().recordRequest(headersTime - startTime,
+                        SystemClock.elapsedRealtime() - headersTime, body.getCount(),
+                        page.books.size());
+            } else if (RetryPolicy.isRetryable(responseCode)) {
+                throw new IOException("Retryable response code: " + responseCode);
             } else {
-                Log.e(LOG_TAG, "Error response code: " + urlConnection.getResponseCode());
+                Log.e(LOG_TAG, "Error response code: " + responseCode);
             }
-        } catch (IOException e) {
-            Log.e(LOG_TAG, "Problem retrieving the book JSON results.", e);
-        } finally {
-            if (urlConnection != null) {
-                urlConnection.disconnect();
+        } catch (SocketTimeoutException e) {
+            if (response == null) {
+                // The headers have not arrived within the timeout, which is a latency of at
+                // least that long, so that the timeouts grow on a link that gets slower.
+                timeoutPolicy.recordLatency(SystemClock.elapsedRealtime() - startTime);
             }
-            if (inputStream != null) {
-                // Closing the input stream could throw an IOException, which is why
-                // the makeHttpRequest(URL url) method signature specifies than an IOException
-                // could be thrown.
-                inputStream.close();
+            throw e;
+        } finally {
+            if (response != null) {
+                // Closing the response instead of disconnecting it returns the connection
+                // to the keep-alive pool.
+                response.close();
             }
         }
-        return jsonResponse;
+        return page;
     }
 
     /**
-     * Convert the {@link InputStream} into a String which contains the
-     * whole JSON response from the server.
+     * Query the DOUBAN data set over the network for the summary of a single book.
+     * A request that has failed in a way that may go away, such as a dropped connection or
+     * an error of the server, is tried again after a jittered backoff.
+     * This is on a background thread.
+     *
+     * @param link  is the link of the book, whose last path segment is the id of the book.
+     * @param token stops the request when it is canceled, such as when nobody waits for it.
+     * @return the summary, which is empty when the book has none,
+     * or null if the request has failed or has been canceled.
      */
-    private static String readFromStream(InputStream inputStream) throws IOException {
-        StringBuilder output = new StringBuilder();
-        if (inputStream != null) {
-            InputStreamReader inputStreamReader =
-                    new InputStreamReader(inputStream, Charset.forName("UTF-8"));
-            BufferedReader reader = new BufferedReader(inputStreamReader);
-            String line = reader.readLine();
-            while (line != null) {
-                output.append(line);
-                line = reader.readLine();
+    public static String fetchSummary(String link, CancellationToken token) {
+        String id = link == null ? null : Uri.parse(link).getLastPathSegment();
+        if (id == null || id.isEmpty()) {
+            return null;
+        }
+        URL url = createUrl(Uri.parse(DOUBAN_BOOK_URL).buildUpon()
+                .appendPath(id)
+                .appendQueryParameter("fields", "summary")
+                .toString());
+        if (url == null) {
+            return null;
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return requestSummary(url, token);
+            } catch (IOException e) {
+                if (token.isCanceled()) {
+                    Log.d(LOG_TAG, "The summary request has been canceled.");
+                    return null;
+                }
+                Log.e(LOG_TAG, "Problem retrieving the summary JSON results, attempt "
+                        + attempt, e);
+            }
+
+            // Wait before the next attempt.
+            if (attempt >= RetryPolicy.MAX_ATTEMPTS
+                    || !sleepUnlessCanceled(RetryPolicy.getBackoffMillis(attempt), token)) {
+                return null;
             }
         }
-        return output.toString();
     }
 
     /**
-     * Return a list of {@link Book} objects that has been built up from
-     * parsing the given JSON response.
+     * Make an HTTPS request for the summary of a single book. The timeouts follow the
+     * latencies that have been observed, in the same way as the requests of the pages.
+     *
+     * @return the summary, or null if the request has failed in a way that is not worth
+     * retrying.
+     * @throws IOException if the request has failed in a way that may go away on a retry.
      */
-    private static List<Book> extractFeatureFromJson(String bookJSON) {
-        // If the JSON string is empty or null, then return early.
-        if (TextUtils.isEmpty(bookJSON)) {
+    private static String requestSummary(URL url, CancellationToken token) throws IOException {
+        long startTime = SystemClock.elapsedRealtime();
+        TimeoutPolicy timeoutPolicy = TimeoutPolicy.getInstance();
+        HttpClient.Response response = null;
+        try {
+            response = HttpClient.get(url, timeoutPolicy.getConnectTimeoutMillis(),
+                    timeoutPolicy.getReadTimeoutMillis(), token);
+            timeoutPolicy.recordLatency(SystemClock.elapsedRealtime() - startTime);
+            int responseCode = response.getResponseCode();
+            if (responseCode == 200) {
+                return readSummary(response.getBody());
+            } else if (RetryPolicy.isRetryable(responseCode)) {
+                throw new IOException("Retryable response code: " + responseCode);
+            }
+            Log.e(LOG_TAG, "Error response code: " + responseCode);
+            return null;
+        } catch (MalformedJsonException | IllegalStateException e) {
+            // The response is not the JSON that is expected, which a retry does not change.
+            Log.e(LOG_TAG, "Problem parsing the summary JSON results.", e);
             return null;
+        } catch (SocketTimeoutException e) {
+            if (response == null) {
+                // The headers have not arrived within the timeout, so that the timeouts grow
+                // on a link that gets slower.
+                timeoutPolicy.recordLatency(SystemClock.elapsedRealtime() - startTime);
+            }
+            throw e;
+        } finally {
+            if (response != null) {
+                response.close();
+            }
+        }
+    }
+
+    /**
+     * Read the summary from the JSON response of a single book, or an empty string
+     * if the response has no summary.
+     */
+    private static String readSummary(InputStream inputStream) throws IOException {
+        String summary = "";
+        JsonReader reader = new JsonReader(
+                new InputStreamReader(inputStream, Charset.forName("UTF-8")));
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.nextName().equals("summary") && reader.peek() == JsonToken.STRING) {
+                summary = reader.nextString();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return summary;
+    }
+
+    /**
+     * {@link FilterInputStream} that counts the bytes read through it.
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+
+        /**
+         * Number of bytes read so far.
+         */
+        private long mCount;
+
+        CountingInputStream(InputStream inputStream) {
+            super(inputStream);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                mCount++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int count = super.read(buffer, offset, length);
+            if (count > 0) {
+                mCount += count;
+            }
+            return count;
         }
 
+        @Override
+        public long skip(long byteCount) throws IOException {
+            long skipped = super.skip(byteCount);
+            mCount += skipped;
+            return skipped;
+        }
+
+        /**
+         * Return the number of bytes read so far.
+         */
+        long getCount() {
+            return mCount;
+        }
+    }
+
+    /**
+     * Return a page of {@link Book} objects that has been built up from parsing
+     * the JSON response token by token, as it arrives from the {@link InputStream}.
+     * The whole response is never held in memory, and fields that are not used are skipped.
+     * Parsing stops between two books when the request has been canceled.
+     */
+    private static Page extractFeatureFromStream(InputStream inputStream,
+                                                 CancellationToken token)
+            throws IOException {
         // Create an empty ArrayList that can start adding books to.
         // This is the only place assign {@link List} to {@link ArrayList}.
         List<Book> books = new ArrayList<>();
+        int total = 0;
+        // The subtitles and the summaries of the page are encoded into a shared buffer,
+        // and only decoded when they are shown.
+        CompactText.Buffer textBuffer = new CompactText.Buffer();
 
-        // Create an empty ArrayList that can start adding image url string to.
-        image = new ArrayList<>();
-
-        // Try to parse the JSON response string. If there's a problem with the way the JSON
-        // is formatted, a JSONException exception object will be thrown.
+        // Try to parse the JSON response stream. If there's a problem with the way the JSON
+        // is formatted, an IOException or IllegalStateException object will be thrown.
         // Catch the exception so the app doesn't crash, and print the error message to the logs.
+        JsonReader reader = new JsonReader(
+                new InputStreamReader(inputStream, Charset.forName("UTF-8")));
         try {
-            // Create a JSONObject from the JSON response string.
-            JSONObject baseJsonResponse = new JSONObject(bookJSON);
-
-            /*
-             * Get the result count from the key called "total".
-             */
-            resultCount = baseJsonResponse.getInt("total");
-
-            // Extract the JSONArray associated with the key called "books",
-            // which represents a list of books.
-            JSONArray bookArray = baseJsonResponse.getJSONArray("books");
-
-            // For each book in the bookArray, create an {@link Book} object.
-            for (int i = 0; i < bookArray.length(); i++) {
-
-                // Get a single book at position i within the list of books.
-                JSONObject currentBook = bookArray.getJSONObject(i);
-
-                // For a given book, extract the String associated with the
-                // key called "subtitle", which represents the subtitle of the book.
-                String subtitle = currentBook.getString("subtitle");
-
-                // For a given book, extract the String associated with the
-                // key called "title", which represents the title of the book.
-                String title = currentBook.getString("title");
-
-                // For a given book, extract the JSONArray associated with the
-                // key called "author", which represents a list of book author.
-                JSONArray authorArray = currentBook.getJSONArray("author");
-                // Create the book author string by default value null.
-                String author = null;
-                // If the authorArray has the book author value, set it to the string.
-                if (authorArray != null && authorArray.length() > 0) {
-                    // Extract the first value of the authorArray,
-                    // which represents get the first author of the book.
-                    author = authorArray.getString(0);
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (name.equals("total")) {
+                    // Get the result count from the key called "total".
+                    total = (int) readNumber(reader);
+                } else if (name.equals("books") && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                    // The array associated with the key called "books" represents a list of
+                    // books. Create a {@link Book} object for each of them as soon as it is read.
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        token.throwIfCanceled();
+                        books.add(readBook(reader, textBuffer));
+                    }
+                    reader.endArray();
+                } else {
+                    reader.skipValue();
                 }
-
-                // For a given book, extract the String associated with the
-                // key called "summary", which represents the summary of book.
-                String summary = currentBook.getString("summary");
-
-                // For a given book, extract the String associated with the
-                // key called "alt", which represents the link of book.
-                String link = currentBook.getString("alt");
-
-                // For a given book, extract the object associated with the
-                // key called "rating", which represents the rating of the book.
-                JSONObject rating = currentBook.getJSONObject("rating");
-
-                // Extract the value for the key called "average",
-                // which represents get the rate for the book.
-                double rate = rating.getDouble("average");
-
-                // Extract the value for the key called "max",
-                // which represents get the max value of the rating.
-                int maxRating = rating.getInt("max");
-
-                /*
-                 *  For a given book, extract the Object for the key called "images",
-                 *  which represents a set of images of the book.
-                 *  Then extract the value for the key called "large",
-                 *  which represents get the large image of the book.
-                 *  Finally, add the image String to the image ArrayList.
-                 */
-                image.add(currentBook.getJSONObject("images").getString("large"));
-
-                // Create a new {@link Book} object with the subtitle, title, author, summary,
-                // rate, maxRating from the JSON response.
-                // Set the image resource to null for the time being.
-                // Image resource will be set in the ImageLoader, after this Loader,
-                // in order to get a fast loading speeding.
-                Book book = new Book(subtitle, title, author, summary, link,
-                        rate, maxRating, null);
-
-                // Add the new {@link Book} to the list of books.
-                books.add(book);
             }
+            reader.endObject();
+        } catch (MalformedJsonException | IllegalStateException e) {
+            // If the JSON is malformed, catch the exception here, so the app doesn't crash.
+            // Print a log message with the message from the exception. Other IO errors are
+            // thrown, so that the request is tried again instead of returning a partial page.
+            Log.e(LOG_TAG, "Problem parsing the book JSON results", e);
+        }
+
+        // Trim the text buffer to the texts of the page, and return the page of books.
+        textBuffer.finish();
+        return new Page(books, total);
+    }
 
-        } catch (JSONException e) {
-            // If an error is thrown when executing any of the above statements in the "try" block,
-            // catch the exception here, so the app doesn't crash. Print a log message
-            // with the message from the exception.
-            Log.e("QueryUtils", "Problem parsing the book JSON results", e);
+    /**
+     * Read a number from the {@link JsonReader} leniently, since DOUBAN sends some numbers,
+     * such as the average rating, as strings that may be empty.
+     *
+     * @return the number, or 0 if the value is not a number.
+     */
+    private static double readNumber(JsonReader reader) throws IOException {
+        JsonToken token = reader.peek();
+        if (token != JsonToken.NUMBER && token != JsonToken.STRING) {
+            reader.skipValue();
+            return 0;
         }
+        // A number token is also read as its string, which is parsed the same way.
+        String value = reader.nextString().trim();
+        try {
+            return value.isEmpty() ? 0 : Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            Log.w(LOG_TAG, "Problem parsing the number " + value);
+            return 0;
+        }
+    }
 
-        // Return the list of books.
-        return books;
+    /**
+     * Read a single book object from the {@link JsonReader},
+     * keeping its subtitle and summary in the buffer of the page.
+     */
+    private static Book readBook(JsonReader reader, CompactText.Buffer textBuffer)
+            throws IOException {
+        String subtitle = null;
+        String title = null;
+        String author = null;
+        String summary = null;
+        String link = null;
+        double rate = 0;
+        int maxRating = 0;
+        String imageUrl = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                // Keep the default value for a field that has no value.
+                reader.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "subtitle":
+                    // The key called "subtitle" represents the subtitle of the book.
+                    subtitle = reader.nextString();
+                    break;
+                case "title":
+                    // The key called "title" represents the title of the book.
+                    title = reader.nextString();
+                    break;
+                case "author":
+                    // The key called "author" represents a list of book author.
+                    // Extract the first value of it, which represents the first author of the book.
+                    reader.beginArray();
+                    if (reader.hasNext()) {
+                        author = reader.nextString();
+                    }
+                    while (reader.hasNext()) {
+                        reader.skipValue();
+                    }
+                    reader.endArray();
+                    break;
+                case "summary":
+                    // The key called "summary" represents the summary of book.
+                    summary = reader.nextString();
+                    break;
+                case "alt":
+                    // The key called "alt" represents the link of book.
+                    link = reader.nextString();
+                    break;
+                case "rating":
+                    // The key called "rating" represents the rating of the book.
+                    // Its "average" is the rate for the book, and its "max" is the max value.
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        String ratingName = reader.nextName();
+                        if (ratingName.equals("average")) {
+                            rate = readNumber(reader);
+                        } else if (ratingName.equals("max")) {
+                            maxRating = (int) readNumber(reader);
+                        } else {
+                            reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                    break;
+                case "images":
+                    // The key called "images" represents a set of images of the book.
+                    // Extract the value for the key called "large",
+                    // which represents the large image of the book.
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        if (reader.nextName().equals("large")) {
+                            imageUrl = reader.nextString();
+                        } else {
+                            reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+
+        // Create a new {@link Book} object with the subtitle, title, author, summary,
+        // rate, maxRating and image url string from the JSON response.
+        // Set the image resource to null for the time being.
+        // Image resource will be set in the ImageLoader, after this Loader,
+        // in order to get a fast loading speeding.
+        return new Book(textBuffer.add(subtitle), title, author, textBuffer.add(summary), link,
+                rate, maxRating, imageUrl, null);
     }
 }
@@ -0,0 +1,232 @@
+package com.example.android.booklisting;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Keeps the {@link SearchResult} on screen in a small binary file, so that the screen can
+ * come back after process death without fetching the page again. The covers are not kept,
+ * since their URLs are the keys of the image caches, which survive on their own.
+ * <p>
+ * The file holds a version, the time it was written, the page info of the result,
+ * and the text, rating and cover URL of each book.
+ */
+public class ResultSnapshot {
+
+    /**
+     * Tag for the log messages.
+     */
+    private static final String LOG_TAG = ResultSnapshot.class.getSimpleName();
+
+    /**
+     * Name of the file in the app cache dir.
+     */
+    private static final String FILE_NAME = "result_snapshot";
+
+    /**
+     * Version of the file format, which is bumped whenever the format changes.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Time in milliseconds after which a snapshot is too old to be shown.
+     */
+    private static final long MAX_AGE_MILLIS = 30 * 60 * 1000;
+
+    /**
+     * Max byte count of a string in the file, so that a corrupted length is never allocated.
+     */
+    private static final int MAX_STRING_BYTES = 1024 * 1024;
+
+    /**
+     * Charset of the strings in the file.
+     */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Single background thread that writes the snapshots, in order.
+     */
+    private static final ExecutorService WRITE_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    /**
+     * Create a private constructor because no one should ever create a {@link ResultSnapshot}
+     * object. This class is only meant to hold static methods.
+     */
+    private ResultSnapshot() {
+    }
+
+    /**
+     * Write the result to the snapshot file on a background thread.
+     * The result is immutable, so it can be written while the screen goes on.
+     *
+     * @param context is any context of the application.
+     * @param result  is the result on screen.
+     */
+    public static void save(Context context, final SearchResult result) {
+        final File file = new File(context.getApplicationContext().getCacheDir(), FILE_NAME);
+        WRITE_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                write(file, result);
+            }
+        });
+    }
+
+    /**
+     * Read the snapshot file back, when it holds the given page and is not too old.
+     * The file is small, so this is fast enough to run on the main thread while the
+     * activity is being created.
+     *
+     * @param context  is any context of the application.
+     * @param keywords is the keywords of the page on screen.
+     * @param start    is the result offset of the page on screen.
+     * @return the result, or null if the snapshot is missing, stale or of another page.
+     */
+    public static SearchResult read(Context context, String keywords, int start) {
+        File file = new File(context.getApplicationContext().getCacheDir(), FILE_NAME);
+        if (!file.exists()) {
+            return null;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != VERSION) {
+                return null;
+            }
+            long age = System.currentTimeMillis() - in.readLong();
+            String snapshotKeywords = readString(in);
+            int snapshotStart = in.readInt();
+            if (age < 0 || age > MAX_AGE_MILLIS || snapshotStart != start
+                    || !keywords.equals(snapshotKeywords)) {
+                return null;
+            }
+            int count = in.readInt();
+            int resultCount = in.readInt();
+            boolean offline = in.readBoolean();
+            int bookCount = in.readInt();
+            // Keep the subtitles and the summaries encoded, as the books read from Internet.
+            CompactText.Buffer textBuffer = new CompactText.Buffer();
+            List<Book> books = new ArrayList<>();
+            for (int index = 0; index < bookCount; index++) {
+                CompactText subtitle = textBuffer.add(readString(in));
+                String title = readString(in);
+                String author = readString(in);
+                CompactText summary = textBuffer.add(readString(in));
+                String link = readString(in);
+                double rate = in.readDouble();
+                int maxRating = in.readInt();
+                String imageUrl = readString(in);
+                books.add(new Book(subtitle, title, author, summary, link, rate, maxRating,
+                        imageUrl, null));
+            }
+            textBuffer.finish();
+            return new SearchResult(snapshotKeywords, snapshotStart, count, books,
+                    resultCount, offline);
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem reading the result snapshot.", e);
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    /**
+     * Write the result to a temp file, and rename it to the snapshot file,
+     * so that a crash can never leave a half-written snapshot behind.
+     */
+    private static void write(File file, SearchResult result) {
+        File tempFile = new File(file.getPath() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+            out.writeInt(VERSION);
+            out.writeLong(System.currentTimeMillis());
+            writeString(out, result.getKeywords());
+            out.writeInt(result.getStart());
+            out.writeInt(result.getCount());
+            out.writeInt(result.getResultCount());
+            out.writeBoolean(result.isOffline());
+            out.writeInt(result.getBooks().size());
+            for (Book book : result.getBooks()) {
+                writeString(out, book.peekSubtitle());
+                writeString(out, book.getTitle());
+                writeString(out, book.getAuthor());
+                writeString(out, book.peekSummary());
+                writeString(out, book.getLink());
+                out.writeDouble(book.getRate());
+                out.writeInt(book.getMaxRating());
+                writeString(out, book.getImageUrl());
+            }
+            out.close();
+            out = null;
+            if (!tempFile.renameTo(file)) {
+                Log.e(LOG_TAG, "Problem renaming the result snapshot.");
+            }
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem writing the result snapshot.", e);
+        } finally {
+            closeQuietly(out);
+            if (tempFile.exists() && !tempFile.delete()) {
+                Log.w(LOG_TAG, "Problem deleting the temp result snapshot.");
+            }
+        }
+    }
+
+    /**
+     * Helper method that write a string that may be null, as its byte count and UTF-8 bytes.
+     * A long summary does not fit the 64 KB limit of {@link DataOutputStream#writeUTF}.
+     */
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        if (string == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = string.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Helper method that read a string written by {@link #writeString}.
+     */
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        } else if (length > MAX_STRING_BYTES) {
+            throw new IOException("String too long: " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    /**
+     * Helper method that close a stream, logging the problem instead of throwing it.
+     */
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "Problem closing the result snapshot.", e);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.android.booklisting;
+
+import java.net.HttpURLConnection;
+import java.util.Random;
+
+/**
+ * Decides whether a failed search request is tried again, and how long to wait before it.
+ * <p>
+ * The wait grows exponentially with every attempt up to a cap, and a random part of it is
+ * dropped ("full jitter"), so that the clients that failed together do not retry together.
+ * Every attempt of a page must finish before the deadline of the page.
+ */
+public class RetryPolicy {
+
+    /**
+     * Max number of attempts of a page, including the first one.
+     */
+    public static final int MAX_ATTEMPTS = 3;
+
+    /**
+     * Time in milliseconds that the whole page, with every attempt and wait, is bounded by.
+     */
+    public static final long PAGE_DEADLINE_MILLIS = 20000;
+
+    /**
+     * Wait in milliseconds before the first retry, which doubles with every retry.
+     */
+    private static final long BASE_BACKOFF_MILLIS = 500;
+
+    /**
+     * Max wait in milliseconds before a retry.
+     */
+    private static final long MAX_BACKOFF_MILLIS = 4000;
+
+    /**
+     * Random source of the jitter, which is thread safe.
+     */
+    private static final Random RANDOM = new Random();
+
+    /**
+     * Create a private constructor because no one should ever create a {@link RetryPolicy}
+     * object. This class is only meant to hold static variables and methods.
+     */
+    private RetryPolicy() {
+    }
+
+    /**
+     * Return whether a response with the given code may succeed if it is tried again,
+     * which is when the server has timed out, throttled, or failed on its side.
+     */
+    public static boolean isRetryable(int responseCode) {
+        return responseCode == HttpURLConnection.HTTP_CLIENT_TIMEOUT
+                || responseCode == 429 /* Too Many Requests */
+                || responseCode >= HttpURLConnection.HTTP_INTERNAL_ERROR;
+    }
+
+    /**
+     * Return the time in milliseconds to wait before the next attempt.
+     *
+     * @param attempt is the number of attempts that have failed so far, starting from 1.
+     */
+    public static long getBackoffMillis(int attempt) {
+        long backoff = Math.min(MAX_BACKOFF_MILLIS,
+                BASE_BACKOFF_MILLIS << Math.min(attempt - 1, 16));
+        return (long) (RANDOM.nextDouble() * backoff);
+    }
+}
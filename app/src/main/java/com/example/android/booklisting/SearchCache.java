@@ -0,0 +1,202 @@
+package com.example.android.booklisting;
+
+import android.os.SystemClock;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A process-wide memory cache of parsed search result pages, keyed by the normalized keywords,
+ * the result offset and the number of books per request. Pages expire after a fixed time.
+ */
+public class SearchCache {
+
+    /**
+     * Time in milliseconds that a cached page stays valid.
+     */
+    private static final long TIME_TO_LIVE_MILLIS = 5 * 60 * 1000;
+
+    /**
+     * Max number of pages that are kept in memory.
+     */
+    private static final int MAX_ENTRIES = 64;
+
+    /**
+     * The single instance shared by every loader of the process.
+     */
+    private static final SearchCache INSTANCE = new SearchCache();
+
+    /**
+     * Map from the cache key to the cached page, in access order, so that the eldest is the LRU one.
+     */
+    private final LinkedHashMap<String, Entry> mEntries =
+            new LinkedHashMap<String, Entry>(0, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                    return size() > MAX_ENTRIES;
+                }
+            };
+
+    /**
+     * Number of lookups that were answered from memory, and that were not.
+     */
+    private int mHitCount, mMissCount;
+
+    /**
+     * A cached page of the search result.
+     */
+    public static class Entry {
+
+        /**
+         * Books of the page, without their image resource.
+         */
+        private final List<Book> mBooks;
+
+        /**
+         * Result count of the whole search.
+         */
+        private final int mResultCount;
+
+        /**
+         * Time when the page was fetched, from {@link SystemClock#elapsedRealtime()}.
+         */
+        private final long mFetchTime;
+
+        private Entry(List<Book> books, int resultCount, long fetchTime) {
+            mBooks = books;
+            mResultCount = resultCount;
+            mFetchTime = fetchTime;
+        }
+
+        /**
+         * Return a new list of new {@link Book} objects of the page,
+         * so that the cached books are never changed by the adapter.
+         */
+        public List<Book> getBooks() {
+            return copyWithoutImages(mBooks);
+        }
+
+        /**
+         * Return the result count of the whole search.
+         */
+        public int getResultCount() {
+            return mResultCount;
+        }
+    }
+
+    /**
+     * Create a private constructor because the cache is only meant to be used through
+     * {@link #getInstance()}.
+     */
+    private SearchCache() {
+    }
+
+    /**
+     * Return the shared {@link SearchCache}.
+     */
+    public static SearchCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Return the cached page of the given request, or null if it is missing or expired.
+     *
+     * @param keywords is the keywords that users input.
+     * @param start    is the result offset of the page.
+     * @param count    is the number of books per request.
+     */
+    public synchronized Entry get(String keywords, int start, int count) {
+        String key = keyOf(keywords, start, count);
+        Entry entry = mEntries.get(key);
+        if (entry != null
+                && SystemClock.elapsedRealtime() - entry.mFetchTime > TIME_TO_LIVE_MILLIS) {
+            mEntries.remove(key);
+            entry = null;
+        }
+        if (entry == null) {
+            mMissCount++;
+        } else {
+            mHitCount++;
+        }
+        return entry;
+    }
+
+    /**
+     * Return whether the page of the given request is in memory and has not expired,
+     * without counting it as a lookup.
+     */
+    public synchronized boolean contains(String keywords, int start, int count) {
+        Entry entry = mEntries.get(keyOf(keywords, start, count));
+        return entry != null
+                && SystemClock.elapsedRealtime() - entry.mFetchTime <= TIME_TO_LIVE_MILLIS;
+    }
+
+    /**
+     * Put the fetched page of the given request into memory.
+     *
+     * @param keywords    is the keywords that users input.
+     * @param start       is the result offset of the page.
+     * @param count       is the number of books per request.
+     * @param books       is the books of the page.
+     * @param resultCount is the result count of the whole search.
+     */
+    public synchronized void put(String keywords, int start, int count,
+                                 List<Book> books, int resultCount) {
+        if (books == null || books.isEmpty()) {
+            return;
+        }
+        mEntries.put(keyOf(keywords, start, count), new Entry(copyWithoutImages(books),
+                resultCount, SystemClock.elapsedRealtime()));
+    }
+
+    /**
+     * Return the number of lookups that were answered from memory.
+     */
+    public synchronized int getHitCount() {
+        return mHitCount;
+    }
+
+    /**
+     * Return the number of lookups that were not answered from memory.
+     */
+    public synchronized int getMissCount() {
+        return mMissCount;
+    }
+
+    /**
+     * Normalize the keywords, so that the same query typed in different ways shares one key.
+     * Whitespace is trimmed and collapsed, full-width characters are folded to half-width,
+     * and the case is folded.
+     */
+    public static String normalize(String keywords) {
+        if (keywords == null) {
+            return "";
+        }
+        // NFKC folds full-width letters, digits and the ideographic space to their half-width form.
+        String normalized = Normalizer.normalize(keywords, Normalizer.Form.NFKC);
+        return normalized.toLowerCase(Locale.ROOT).trim().replaceAll("\\s+", " ");
+    }
+
+    /**
+     * Return the cache key of the given request.
+     */
+    private static String keyOf(String keywords, int start, int count) {
+        return normalize(keywords) + "|" + start + "|" + count;
+    }
+
+    /**
+     * Helper method that copy the books without their image resource,
+     * so that the cache does not hold the decoded covers.
+     */
+    private static List<Book> copyWithoutImages(List<Book> books) {
+        List<Book> copies = new ArrayList<>();
+        for (Book book : books) {
+            copies.add(book.copyWithoutImage());
+        }
+        return copies;
+    }
+}
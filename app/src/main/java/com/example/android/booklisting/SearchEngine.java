@@ -0,0 +1,145 @@
+package com.example.android.booklisting;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Answers a page of a search with an immutable {@link SearchResult}, from the
+ * {@link SearchCache}, from Internet through {@link QueryUtils}, or from the {@link BookStore}.
+ * <p>
+ * The engine has no state of its own, and the caches it uses are thread safe, so any number
+ * of searches, such as the page on screen, the prefetches and the pages of infinite scroll,
+ * can run at the same time on different threads.
+ */
+public class SearchEngine {
+
+    /**
+     * Single background thread that writes the fetched books into the {@link BookStore},
+     * in order, so that a page does not wait for the disk before it is shown.
+     */
+    private static final ExecutorService STORE_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    /**
+     * Context of the application.
+     */
+    private final Context mContext;
+
+    /**
+     * Store of the fetched books, which answers when Internet can not be used.
+     */
+    private final BookStore mBookStore;
+
+    /**
+     * Create a new {@link SearchEngine} object.
+     *
+     * @param context is any context of the application.
+     */
+    public SearchEngine(Context context) {
+        mContext = context.getApplicationContext();
+        mBookStore = BookStore.getInstance(mContext);
+    }
+
+    /**
+     * Return a page of the search result.
+     * A page that has been fetched recently is answered from the {@link SearchCache}, and
+     * the {@link BookStore} answers when the device is offline or the request fails.
+     * This is on a background thread.
+     *
+     * @param keywords is the keywords that users input.
+     * @param start    is the result offset of the page.
+     * @param count    is the number of books per request.
+     * @param token    stops the request when it is canceled, which may be null.
+     * @return the page, or null if it has been canceled or can not be answered.
+     */
+    public SearchResult search(String keywords, int start, int count,
+                               CancellationToken token) {
+        // Answer from memory when the same page has been fetched recently.
+        SearchCache.Entry entry = SearchCache.getInstance().get(keywords, start, count);
+        if (entry != null) {
+            return new SearchResult(keywords, start, count, entry.getBooks(),
+                    entry.getResultCount(), false);
+        }
+
+        // Answer from the stored books at once when the device is offline.
+        if (!isConnected()) {
+            return searchBookStore(keywords, start, count);
+        }
+
+        SearchResult result = fetch(keywords, start, count, token);
+        if (token != null && token.isCanceled()) {
+            return null;
+        }
+        if (result == null) {
+            // The request has failed or timed out, so fall back to the stored books.
+            return searchBookStore(keywords, start, count);
+        }
+        return result;
+    }
+
+    /**
+     * Fetch a page of the search result into the {@link SearchCache} ahead of time.
+     * This is on a background thread.
+     *
+     * @return the page, or null if it is already in memory or can not be fetched.
+     */
+    public SearchResult prefetch(String keywords, int start, int count) {
+        if (SearchCache.getInstance().contains(keywords, start, count)) {
+            return null;
+        }
+        return fetch(keywords, start, count, null);
+    }
+
+    /**
+     * Fetch a page of the search result from Internet, remember it in memory,
+     * and keep its books in the background, so that they can be searched offline later.
+     */
+    private SearchResult fetch(String keywords, int start, int count, CancellationToken token) {
+        SearchResult result = QueryUtils.fetchSearchResult(keywords, start, count, token);
+        if (result != null) {
+            SearchCache.getInstance().put(keywords, start, count,
+                    result.getBooks(), result.getResultCount());
+            storeBooks(result.getBooks());
+        }
+        return result;
+    }
+
+    /**
+     * Write the books into the {@link BookStore} on its own thread, without waiting for it,
+     * since the transaction and the prune that follows it may take a while on a slow disk.
+     */
+    private void storeBooks(final List<Book> books) {
+        STORE_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                mBookStore.putAll(books);
+            }
+        });
+    }
+
+    /**
+     * Answer a page of the search result from the books stored on the device.
+     */
+    private SearchResult searchBookStore(String keywords, int start, int count) {
+        List<Book> books = mBookStore.search(keywords, start, count);
+        if (books == null) {
+            return null;
+        }
+        return new SearchResult(keywords, start, count, books,
+                mBookStore.count(keywords), true);
+    }
+
+    /**
+     * Helper method that tells whether the device is connected to internet or not.
+     */
+    private boolean isConnected() {
+        ConnectivityManager connMgr = (ConnectivityManager)
+                mContext.getSystemService(Context.CONNECTIVITY_SERVICE);
+        NetworkInfo networkInfo = connMgr.getActiveNetworkInfo();
+        return networkInfo != null && networkInfo.isConnected();
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.android.booklisting;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An immutable page of a search result, which is returned by the {@link SearchEngine}.
+ * It carries everything that the screen needs about the page, so that several searches
+ * can run at the same time without sharing any state.
+ */
+public final class SearchResult {
+
+    /**
+     * Keywords of the search.
+     */
+    private final String mKeywords;
+
+    /**
+     * Result offset and the number of books per request of the page.
+     */
+    private final int mStart, mCount;
+
+    /**
+     * Books of the page, which can not be changed.
+     */
+    private final List<Book> mBooks;
+
+    /**
+     * Cover URLs of the books, in the same order as the books.
+     */
+    private final List<String> mImageUrls;
+
+    /**
+     * Result count of the whole search.
+     */
+    private final int mResultCount;
+
+    /**
+     * Whether the page has been answered from the {@link BookStore} instead of Internet.
+     */
+    private final boolean mOffline;
+
+    /**
+     * Create a new {@link SearchResult} object.
+     *
+     * @param keywords    is the keywords of the search.
+     * @param start       is the result offset of the page.
+     * @param count       is the number of books per request.
+     * @param books       is the books of the page.
+     * @param resultCount is the result count of the whole search.
+     * @param offline     is whether the page has been answered from the stored books.
+     */
+    public SearchResult(String keywords, int start, int count, List<Book> books,
+                        int resultCount, boolean offline) {
+        mKeywords = keywords;
+        mStart = start;
+        mCount = count;
+        mBooks = Collections.unmodifiableList(new ArrayList<>(books));
+        List<String> imageUrls = new ArrayList<>();
+        for (Book book : books) {
+            imageUrls.add(book.getImageUrl());
+        }
+        mImageUrls = Collections.unmodifiableList(imageUrls);
+        mResultCount = resultCount;
+        mOffline = offline;
+    }
+
+    /**
+     * Return the keywords of the search.
+     */
+    public String getKeywords() {
+        return mKeywords;
+    }
+
+    /**
+     * Return the result offset of the page.
+     */
+    public int getStart() {
+        return mStart;
+    }
+
+    /**
+     * Return the number of books per request.
+     */
+    public int getCount() {
+        return mCount;
+    }
+
+    /**
+     * Return the books of the page, which can not be changed.
+     */
+    public List<Book> getBooks() {
+        return mBooks;
+    }
+
+    /**
+     * Return the cover URLs of the books, in the same order as the books.
+     */
+    public List<String> getImageUrls() {
+        return mImageUrls;
+    }
+
+    /**
+     * Return the result count of the whole search.
+     */
+    public int getResultCount() {
+        return mResultCount;
+    }
+
+    /**
+     * Return whether the page has been answered from the stored books instead of Internet.
+     */
+    public boolean isOffline() {
+        return mOffline;
+    }
+
+    /**
+     * Return whether the page has no book.
+     */
+    public boolean isEmpty() {
+        return mBooks.isEmpty();
+    }
+
+    /**
+     * Return the number of the page, starting from 1.
+     * The pages before this one are counted in the size of this page, since the page size
+     * may have changed between the pages, and the result offset may not be a multiple of it.
+     */
+    public int getPageNumber() {
+        return ceilDiv(mStart, mCount) + 1;
+    }
+
+    /**
+     * Return the number of pages of the whole search,
+     * counting the pages before and after this one in the size of this page.
+     */
+    public int getPageCount() {
+        return getPageNumber() + ceilDiv(Math.max(0, mResultCount - getNextStart()), mCount);
+    }
+
+    /**
+     * Return the result offset of the page after this one.
+     */
+    public int getNextStart() {
+        return mStart + mCount;
+    }
+
+    /**
+     * Return whether there is a page before this one.
+     */
+    public boolean hasPreviousPage() {
+        return mStart > 0;
+    }
+
+    /**
+     * Return whether there is a page after this one.
+     */
+    public boolean hasNextPage() {
+        return getNextStart() < mResultCount;
+    }
+
+    /**
+     * Helper method that divide and round up.
+     */
+    private static int ceilDiv(int dividend, int divisor) {
+        return (dividend + divisor - 1) / divisor;
+    }
+}
@@ -0,0 +1,233 @@
+package com.example.android.booklisting;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Merges concurrent calls for the same key into one call. The first caller of a key runs the
+ * work on its own thread, and every caller that arrives while it runs waits for, and shares,
+ * the same result.
+ * <p>
+ * A caller may pass a {@link CancellationToken}. A canceled caller stops waiting at once,
+ * and the shared work itself is canceled when every caller of it has been canceled.
+ *
+ * @param <K> is the type of the key, such as a request URL.
+ * @param <V> is the type of the result.
+ */
+public class SingleFlight<K, V> {
+
+    /**
+     * The work of a key, which stops when the given token is canceled.
+     *
+     * @param <V> is the type of the result.
+     */
+    public interface Work<V> {
+        V run(CancellationToken token);
+    }
+
+    /**
+     * A running call, shared by every caller of the same key.
+     */
+    private static class Flight<V> {
+
+        /**
+         * Token of the shared work, which is canceled when every caller has been canceled.
+         */
+        final CancellationToken token = new CancellationToken();
+
+        /**
+         * Task that runs the shared work.
+         */
+        final FutureTask<V> task;
+
+        /**
+         * Number of callers that still want the result.
+         */
+        int callers = 1;
+
+        /**
+         * Whether every caller has left, so that the shared work is being canceled and no
+         * caller may join it any more. It is only read and written under the lock of the
+         * {@link SingleFlight}.
+         */
+        boolean abandoned;
+
+        /**
+         * Latches of the callers that wait for the result, which are released when the task
+         * is done. It is null once the task is done.
+         */
+        private List<CountDownLatch> mWaiters = new ArrayList<>();
+
+        Flight(final Work<V> work) {
+            task = new FutureTask<V>(new Callable<V>() {
+                @Override
+                public V call() {
+                    return work.run(token);
+                }
+            }) {
+                @Override
+                protected void done() {
+                    List<CountDownLatch> waiters;
+                    synchronized (Flight.this) {
+                        waiters = mWaiters;
+                        mWaiters = null;
+                    }
+                    for (CountDownLatch waiter : waiters) {
+                        waiter.countDown();
+                    }
+                }
+            };
+        }
+
+        /**
+         * Add the latch of a waiting caller, or release it at once if the task is done.
+         */
+        void addWaiter(CountDownLatch waiter) {
+            synchronized (this) {
+                if (mWaiters != null) {
+                    mWaiters.add(waiter);
+                    return;
+                }
+            }
+            waiter.countDown();
+        }
+
+        /**
+         * Remove the latch of a caller that no longer waits.
+         */
+        synchronized void removeWaiter(CountDownLatch waiter) {
+            if (mWaiters != null) {
+                mWaiters.remove(waiter);
+            }
+        }
+    }
+
+    /**
+     * Calls that are running, by their key.
+     */
+    private final HashMap<K, Flight<V>> mInFlight = new HashMap<>();
+
+    /**
+     * Number of calls that have been merged into a running call.
+     */
+    private int mMergedCount;
+
+    /**
+     * Run the work for the given key, or wait for the running work of the same key.
+     *
+     * @param key         is the key of the work.
+     * @param callerToken is the cancellation token of the caller, which may be null.
+     * @param work        is the work to run when no call of the same key is running.
+     * @return the result of the work, or null if the caller is canceled or interrupted.
+     */
+    public V execute(final K key, CancellationToken callerToken, Work<V> work) {
+        final Flight<V> flight;
+        boolean runner;
+        synchronized (this) {
+            Flight<V> running = mInFlight.get(key);
+            if (running != null && !running.abandoned) {
+                // Another caller is already running the same work, so share its result.
+                running.callers++;
+                mMergedCount++;
+                flight = running;
+                runner = false;
+            } else {
+                flight = new Flight<>(work);
+                mInFlight.put(key, flight);
+                runner = true;
+            }
+        }
+
+        // Leave the flight, and stop waiting, when the caller is canceled.
+        final CountDownLatch wake = new CountDownLatch(1);
+        CancellationToken.OnCancelListener leaveListener = new CancellationToken.OnCancelListener() {
+            @Override
+            public void onCancel() {
+                leave(key, flight);
+                wake.countDown();
+            }
+        };
+        if (callerToken != null) {
+            callerToken.addOnCancelListener(leaveListener);
+        }
+        try {
+            if (runner) {
+                flight.task.run();
+            }
+            flight.addWaiter(wake);
+            return await(flight.task, wake, callerToken);
+        } finally {
+            flight.removeWaiter(wake);
+            if (callerToken != null) {
+                callerToken.removeOnCancelListener(leaveListener);
+            }
+            if (runner) {
+                synchronized (this) {
+                    if (mInFlight.get(key) == flight) {
+                        mInFlight.remove(key);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Return the number of calls that have been merged into a running call.
+     */
+    public synchronized int getMergedCount() {
+        return mMergedCount;
+    }
+
+    /**
+     * Remove a caller from the flight, and cancel the shared work when no caller is left.
+     * The flight is abandoned under the same lock as the last caller leaves, so that a caller
+     * that arrives while it is being canceled starts a new flight instead of joining it.
+     */
+    private void leave(K key, Flight<V> flight) {
+        synchronized (this) {
+            flight.callers--;
+            if (flight.callers > 0) {
+                return;
+            }
+            flight.abandoned = true;
+            if (mInFlight.get(key) == flight) {
+                mInFlight.remove(key);
+            }
+        }
+        flight.token.cancel();
+    }
+
+    /**
+     * Wait for the result of the task until it is done or the caller is canceled,
+     * rethrowing the unchecked exception it threw.
+     *
+     * @param wake is released when the task is done or the caller is canceled.
+     */
+    private static <V> V await(FutureTask<V> task, CountDownLatch wake,
+                               CancellationToken callerToken) {
+        try {
+            wake.await();
+            if (callerToken != null && callerToken.isCanceled()) {
+                return null;
+            }
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.example.android.booklisting;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.LruCache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Fetches the summary of a book on its own, when its card is expanded, since a search
+ * only asks for the fields that the list shows. A summary is answered from memory,
+ * then from the {@link BookStore}, and only then from Internet, and it is kept in both.
+ */
+public class SummaryFetcher {
+
+    /**
+     * Max number of summaries kept in memory.
+     */
+    private static final int MAX_SUMMARIES = 100;
+
+    /**
+     * Callback of a fetch, which is called on the main thread.
+     */
+    public interface OnSummaryFetchedListener {
+
+        /**
+         * Called when the summary of a book has been fetched, or has failed to be fetched.
+         *
+         * @param link    is the link of the book.
+         * @param summary is the summary of the book, or null if the fetch has failed.
+         */
+        void onSummaryFetched(String link, String summary);
+    }
+
+    /**
+     * The single instance shared by every list of the process.
+     */
+    private static SummaryFetcher sInstance;
+
+    /**
+     * Context of the application.
+     */
+    private final Context mContext;
+
+    /**
+     * Summaries that have been fetched, keyed by the link of their book.
+     */
+    private final LruCache<String, String> mSummaries = new LruCache<>(MAX_SUMMARIES);
+
+    /**
+     * A summary that is being fetched, with the listeners that wait for it.
+     */
+    private static final class Fetch {
+
+        /**
+         * Listeners that wait for the summary, so that a second caller of the same summary,
+         * such as a recreated activity, is also called back.
+         */
+        final List<OnSummaryFetchedListener> listeners = new ArrayList<>();
+
+        /**
+         * Token of the request, which is canceled when no listener waits for it any more.
+         */
+        final CancellationToken token = new CancellationToken();
+    }
+
+    /**
+     * Summaries that are being fetched, keyed by the link of their book.
+     * This is only used on the main thread.
+     */
+    private final Map<String, Fetch> mPendingFetches = new HashMap<>();
+
+    /**
+     * Single background thread that fetches the summaries one by one.
+     */
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+
+    /**
+     * Handler of the main thread, which delivers the summaries.
+     */
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    private SummaryFetcher(Context context) {
+        mContext = context.getApplicationContext();
+    }
+
+    /**
+     * Return the shared {@link SummaryFetcher}.
+     *
+     * @param context is any context of the application.
+     */
+    public static synchronized SummaryFetcher getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new SummaryFetcher(context);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Return the summary of the book if it has been fetched, or null if it has not.
+     *
+     * @param link is the link of the book.
+     */
+    public String get(String link) {
+        return link == null ? null : mSummaries.get(link);
+    }
+
+    /**
+     * Fetch the summary of the book in the background, or wait for the fetch that is running
+     * already. This is on the main thread.
+     *
+     * @param link     is the link of the book.
+     * @param listener is called on the main thread once the fetch has finished.
+     */
+    public void fetch(final String link, OnSummaryFetchedListener listener) {
+        if (link == null) {
+            return;
+        }
+        Fetch pendingFetch = mPendingFetches.get(link);
+        if (pendingFetch != null) {
+            if (!pendingFetch.listeners.contains(listener)) {
+                pendingFetch.listeners.add(listener);
+            }
+            return;
+        }
+        final Fetch fetch = new Fetch();
+        fetch.listeners.add(listener);
+        mPendingFetches.put(link, fetch);
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (fetch.token.isCanceled()) {
+                    // Nobody waits for the summary any more.
+                    return;
+                }
+                BookStore bookStore = BookStore.getInstance(mContext);
+                String summary = bookStore.getSummary(link);
+                if (summary == null && isConnected()) {
+                    summary = QueryUtils.fetchSummary(link, fetch.token);
+                    if (summary != null) {
+                        bookStore.putSummary(link, summary);
+                    }
+                }
+                if (summary != null) {
+                    mSummaries.put(link, summary);
+                }
+                final String fetchedSummary = summary;
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (fetch.token.isCanceled()) {
+                            return;
+                        }
+                        mPendingFetches.remove(link);
+                        for (OnSummaryFetchedListener pendingListener : fetch.listeners) {
+                            pendingListener.onSummaryFetched(link, fetchedSummary);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Stop waiting for the summary of the book, and cancel its request when no other listener
+     * waits for it, such as when its card has scrolled away. This is on the main thread.
+     *
+     * @param link     is the link of the book.
+     * @param listener is the listener that has been given to {@link #fetch}.
+     */
+    public void cancel(String link, OnSummaryFetchedListener listener) {
+        Fetch fetch = link == null ? null : mPendingFetches.get(link);
+        if (fetch == null) {
+            return;
+        }
+        fetch.listeners.remove(listener);
+        if (fetch.listeners.isEmpty()) {
+            mPendingFetches.remove(link);
+            fetch.token.cancel();
+        }
+    }
+
+    /**
+     * Helper method that tells whether the device is connected to internet or not.
+     */
+    private boolean isConnected() {
+        ConnectivityManager connMgr = (ConnectivityManager)
+                mContext.getSystemService(Context.CONNECTIVITY_SERVICE);
+        NetworkInfo networkInfo = connMgr.getActiveNetworkInfo();
+        return networkInfo != null && networkInfo.isConnected();
+    }
+}
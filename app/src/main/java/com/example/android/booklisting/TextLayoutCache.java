@@ -0,0 +1,114 @@
+package com.example.android.booklisting;
+
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.text.TextUtils;
+import android.util.LruCache;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Lays out the text of the books into {@link Layout}s on a background thread, and keeps them
+ * in memory, so that a {@link TextLayoutView} that shows the text only has to draw it.
+ * It is thread safe.
+ * <p>
+ * A layout is keyed by the text, the paint and the width that it has been laid out in,
+ * so a layout that has been built for another width is never drawn.
+ */
+public class TextLayoutCache {
+
+    /**
+     * Max number of layouts kept in memory, which covers the title, subtitle, author and
+     * summary of the books in a full window of pages.
+     */
+    private static final int MAX_LAYOUTS = 400;
+
+    /**
+     * Single background thread that lays out the text, in the order that it is requested.
+     */
+    private static final ExecutorService LAYOUT_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    /**
+     * Layouts that have been built, keyed by {@link #key}.
+     */
+    private final LruCache<String, Layout> mLayouts = new LruCache<>(MAX_LAYOUTS);
+
+    /**
+     * Return the layout of the text, and build it on the calling thread if it has not been
+     * built yet, such as when the view is wider or narrower than it was expected to be.
+     * The paint is copied, and the copy is kept by the layout to draw it later.
+     *
+     * @param text     is the text to lay out.
+     * @param paint    is the paint that the text is drawn with.
+     * @param width    is the width in pixels that the text is laid out in.
+     * @param maxLines is the max number of lines, after which the text is ellipsized.
+     */
+    public Layout getOrBuild(CharSequence text, TextPaint paint, int width, int maxLines) {
+        String key = key(text, paint, width, maxLines);
+        Layout layout = mLayouts.get(key);
+        if (layout == null) {
+            layout = build(text, new TextPaint(paint), width, maxLines);
+            mLayouts.put(key, layout);
+        }
+        return layout;
+    }
+
+    /**
+     * Run the task on the background thread that lays out the text, after the tasks
+     * that have been run before it. The task builds its layouts with {@link #getOrBuild}.
+     */
+    public static void runInBackground(Runnable task) {
+        LAYOUT_EXECUTOR.execute(task);
+    }
+
+    /**
+     * Helper method that build the key of a layout from everything that changes its result.
+     * The whole text is part of the key, since two texts of the same hash must never share
+     * a layout, and only the expanded cards lay out a long summary.
+     */
+    private static String key(CharSequence text, TextPaint paint, int width, int maxLines) {
+        int style = paint.getTypeface() == null ? 0 : paint.getTypeface().getStyle();
+        return paint.getTextSize() + ":" + style + ":" + paint.getColor() + ":"
+                + width + ":" + maxLines + ":" + (text == null ? "" : text);
+    }
+
+    /**
+     * Lay out the text in the given width, in the same way as a {@link android.widget.TextView}
+     * whose ellipsize is end, showing at most the given number of lines.
+     */
+    private static Layout build(CharSequence text, TextPaint paint, int width, int maxLines) {
+        if (text == null) {
+            text = "";
+        }
+        if (maxLines == 1) {
+            // Cut a single line down to the width, and add an ellipsis.
+            return newLayout(TextUtils.ellipsize(text, paint, width, TextUtils.TruncateAt.END),
+                    paint, width);
+        }
+
+        Layout layout = newLayout(text, paint, width);
+        if (layout.getLineCount() <= maxLines) {
+            return layout;
+        }
+        // Keep the lines before the last visible line, and cut the rest of the text down
+        // to a single line with an ellipsis. The StaticLayout constructor of the older
+        // platforms can not ellipsize a line other than the first.
+        int lastLineStart = layout.getLineStart(maxLines - 1);
+        String rest = text.subSequence(lastLineStart, text.length()).toString()
+                .replace('\n', ' ');
+        CharSequence lastLine = TextUtils.ellipsize(rest, paint, width,
+                TextUtils.TruncateAt.END);
+        return newLayout(TextUtils.concat(text.subSequence(0, lastLineStart), lastLine),
+                paint, width);
+    }
+
+    /**
+     * Helper method that create a {@link StaticLayout} with the spacing of a TextView.
+     */
+    private static Layout newLayout(CharSequence text, TextPaint paint, int width) {
+        return new StaticLayout(text, paint, width, Layout.Alignment.ALIGN_NORMAL,
+                1.0f, 0.0f, true);
+    }
+}
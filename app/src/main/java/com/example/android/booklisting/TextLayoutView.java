@@ -0,0 +1,163 @@
+package com.example.android.booklisting;
+
+import android.content.Context;
+import android.content.res.ColorStateList;
+import android.content.res.TypedArray;
+import android.graphics.Canvas;
+import android.graphics.Typeface;
+import android.text.Layout;
+import android.text.TextPaint;
+import android.util.AttributeSet;
+import android.view.View;
+
+/**
+ * A view that draws a line or a block of text from a {@link Layout} of the
+ * {@link TextLayoutCache}, so that the text which has been laid out on a background thread
+ * is not measured again on the main thread, as a {@link android.widget.TextView} would.
+ * <p>
+ * It reads the textSize, textStyle, textColor and maxLines attributes of a TextView.
+ * The text is always ellipsized at the end.
+ */
+public class TextLayoutView extends View {
+
+    /**
+     * Attributes of a TextView that this view reads, in the ascending order of their ids.
+     */
+    private static final int[] ATTRS = {android.R.attr.textSize, android.R.attr.textStyle,
+            android.R.attr.textColor, android.R.attr.maxLines};
+
+    /**
+     * Paint of the text, which is copied by the {@link TextLayoutCache} for every layout.
+     */
+    private final TextPaint mPaint = new TextPaint(TextPaint.ANTI_ALIAS_FLAG);
+
+    /**
+     * Max number of lines of the text.
+     */
+    private final int mMaxLines;
+
+    /**
+     * Text of the view, and the cache that lays it out.
+     */
+    private CharSequence mText = "";
+    private TextLayoutCache mLayoutCache;
+
+    /**
+     * Layout of the text in the current width, or null if the view has not been measured.
+     */
+    private Layout mLayout;
+
+    public TextLayoutView(Context context) {
+        this(context, null);
+    }
+
+    public TextLayoutView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        TypedArray typedArray = context.obtainStyledAttributes(attrs, ATTRS);
+        mPaint.density = getResources().getDisplayMetrics().density;
+        mPaint.setTextSize(typedArray.getDimension(0, mPaint.getTextSize()));
+        int textStyle = typedArray.getInt(1, Typeface.NORMAL);
+        if (textStyle != Typeface.NORMAL) {
+            mPaint.setTypeface(Typeface.defaultFromStyle(textStyle));
+        }
+        ColorStateList textColor = typedArray.getColorStateList(2);
+        if (textColor != null) {
+            mPaint.setColor(textColor.getDefaultColor());
+        }
+        mMaxLines = typedArray.getInt(3, Integer.MAX_VALUE);
+        typedArray.recycle();
+    }
+
+    /**
+     * Return the paint of the text, which must not be changed.
+     */
+    public TextPaint getPaint() {
+        return mPaint;
+    }
+
+    /**
+     * Return the max number of lines of the text.
+     */
+    public int getMaxLines() {
+        return mMaxLines;
+    }
+
+    /**
+     * Set the text of the view. Its layout is taken from the cache when the view is measured,
+     * and it is only built on the main thread when the cache has no layout in that width.
+     *
+     * @param text        is the text to show.
+     * @param layoutCache is the cache of the layouts.
+     */
+    public void setText(CharSequence text, TextLayoutCache layoutCache) {
+        if (text == null) {
+            text = "";
+        }
+        mLayoutCache = layoutCache;
+        if (!text.toString().equals(mText.toString())) {
+            mText = text;
+            mLayout = null;
+            setContentDescription(text);
+            requestLayout();
+            invalidate();
+        }
+    }
+
+    /**
+     * Return the text of the view.
+     */
+    public CharSequence getText() {
+        return mText;
+    }
+
+    /**
+     * Return the width in pixels that the text is laid out in, for the given width of the view.
+     */
+    public int getTextWidth(int viewWidth) {
+        return Math.max(0, viewWidth - getPaddingLeft() - getPaddingRight());
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int widthMode = MeasureSpec.getMode(widthMeasureSpec);
+        int textWidth = widthMode == MeasureSpec.UNSPECIFIED
+                ? (int) Math.ceil(Layout.getDesiredWidth(mText, mPaint))
+                : getTextWidth(MeasureSpec.getSize(widthMeasureSpec));
+
+        if (mLayout == null || mLayout.getWidth() != textWidth) {
+            if (mLayoutCache == null) {
+                // The view is measured before any text has been set.
+                mLayoutCache = new TextLayoutCache();
+            }
+            mLayout = mLayoutCache.getOrBuild(mText, mPaint, textWidth, mMaxLines);
+        }
+
+        int width;
+        if (widthMode == MeasureSpec.EXACTLY) {
+            width = MeasureSpec.getSize(widthMeasureSpec);
+        } else {
+            // Wrap the widest line, within the given width.
+            float widestLine = 0;
+            for (int line = 0; line < mLayout.getLineCount(); line++) {
+                widestLine = Math.max(widestLine, mLayout.getLineWidth(line));
+            }
+            width = (int) Math.ceil(widestLine) + getPaddingLeft() + getPaddingRight();
+        }
+        int lineCount = Math.min(mLayout.getLineCount(), mMaxLines);
+        int height = mLayout.getLineBottom(lineCount - 1) + getPaddingTop() + getPaddingBottom();
+        setMeasuredDimension(resolveSize(width, widthMeasureSpec),
+                resolveSize(height, heightMeasureSpec));
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (mLayout == null) {
+            return;
+        }
+        canvas.save();
+        canvas.translate(getPaddingLeft(), getPaddingTop());
+        mLayout.draw(canvas);
+        canvas.restore();
+    }
+}
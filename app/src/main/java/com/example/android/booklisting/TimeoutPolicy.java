@@ -0,0 +1,97 @@
+package com.example.android.booklisting;
+
+/**
+ * Chooses the connect and read timeouts of the search requests from a rolling percentile
+ * of the latencies that have been observed, so that a stuck socket is given up on after
+ * a few times the usual wait, instead of after a fixed 10 or 15 seconds.
+ */
+public class TimeoutPolicy {
+
+    /**
+     * Number of the most recent latencies that the percentile is taken over.
+     */
+    private static final int WINDOW_SIZE = 32;
+
+    /**
+     * Min number of latencies before the timeouts follow them.
+     */
+    private static final int MIN_SAMPLES = 5;
+
+    /**
+     * Percentile of the latencies that the timeouts are based on.
+     */
+    private static final double PERCENTILE = 0.95;
+
+    /**
+     * Number of times the percentile latency that a request is allowed to wait.
+     */
+    private static final int TIMEOUT_MULTIPLIER = 4;
+
+    /**
+     * Min timeout in milliseconds, so that a fast link still tolerates a slow response.
+     */
+    private static final int MIN_TIMEOUT_MILLIS = 2000;
+
+    /**
+     * Default and max timeouts in milliseconds, which are used before enough latencies
+     * have been observed.
+     */
+    private static final int MAX_CONNECT_TIMEOUT_MILLIS = 15000;
+    private static final int MAX_READ_TIMEOUT_MILLIS = 10000;
+
+    /**
+     * The single instance shared by every search of the process.
+     */
+    private static final TimeoutPolicy INSTANCE = new TimeoutPolicy();
+
+    /**
+     * The most recent latencies in milliseconds.
+     */
+    private final LatencyWindow mLatencies = new LatencyWindow(WINDOW_SIZE);
+
+    /**
+     * Create a private constructor because the policy is only meant to be used through
+     * {@link #getInstance()}.
+     */
+    private TimeoutPolicy() {
+    }
+
+    /**
+     * Return the shared {@link TimeoutPolicy}.
+     */
+    public static TimeoutPolicy getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Record the time that a request took until its response headers arrived.
+     */
+    public void recordLatency(long latencyMillis) {
+        mLatencies.record(latencyMillis);
+    }
+
+    /**
+     * Return the connect timeout in milliseconds of the next request.
+     */
+    public int getConnectTimeoutMillis() {
+        return getTimeoutMillis(MAX_CONNECT_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Return the read timeout in milliseconds of the next request.
+     */
+    public int getReadTimeoutMillis() {
+        return getTimeoutMillis(MAX_READ_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Helper method that return a few times the percentile latency, within the bounds.
+     */
+    private int getTimeoutMillis(int maxTimeoutMillis) {
+        if (mLatencies.getSampleCount() < MIN_SAMPLES) {
+            return maxTimeoutMillis;
+        }
+        long timeout = mLatencies.getPercentile(PERCENTILE) * TIMEOUT_MULTIPLIER;
+        return (int) Math.max(MIN_TIMEOUT_MILLIS, Math.min(maxTimeoutMillis, timeout));
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.android.booklisting;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit test of the states of {@link CircuitBreaker}, on a clock that the test moves.
+ */
+public class CircuitBreakerTest {
+
+    private long mNow;
+    private CircuitBreaker mBreaker;
+
+    @Before
+    public void setUp() throws Exception {
+        mNow = 1000;
+        mBreaker = new CircuitBreaker() {
+            @Override
+            long now() {
+                return mNow;
+            }
+        };
+    }
+
+    @Test
+    public void staysClosed_belowFailureThreshold() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            assertTrue(mBreaker.allowRequest());
+            mBreaker.recordFailure();
+        }
+        assertTrue(mBreaker.isClosed());
+        assertTrue(mBreaker.allowRequest());
+    }
+
+    @Test
+    public void success_resetsFailureCount() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            mBreaker.recordFailure();
+        }
+        mBreaker.recordSuccess();
+        for (int i = 0; i < 4; i++) {
+            mBreaker.recordFailure();
+        }
+        assertTrue(mBreaker.isClosed());
+    }
+
+    @Test
+    public void opens_afterFailuresInARow() throws Exception {
+        openBreaker();
+        assertFalse(mBreaker.isClosed());
+        assertFalse(mBreaker.allowRequest());
+        mNow += 29999;
+        assertFalse(mBreaker.allowRequest());
+    }
+
+    @Test
+    public void letsOneTrialThrough_afterOpenTime() throws Exception {
+        openBreaker();
+        mNow += 30000;
+        assertTrue(mBreaker.allowRequest());
+        assertFalse(mBreaker.allowRequest());
+    }
+
+    @Test
+    public void closes_whenTrialSucceeds() throws Exception {
+        openBreaker();
+        mNow += 30000;
+        assertTrue(mBreaker.allowRequest());
+        mBreaker.recordSuccess();
+        assertTrue(mBreaker.isClosed());
+        assertTrue(mBreaker.allowRequest());
+    }
+
+    @Test
+    public void doublesOpenTime_whenTrialFails() throws Exception {
+        openBreaker();
+        mNow += 30000;
+        assertTrue(mBreaker.allowRequest());
+        mBreaker.recordFailure();
+        mNow += 59999;
+        assertFalse(mBreaker.allowRequest());
+        mNow += 1;
+        assertTrue(mBreaker.allowRequest());
+    }
+
+    @Test
+    public void capsOpenTime() throws Exception {
+        openBreaker();
+        for (int i = 0; i < 10; i++) {
+            mNow += 5 * 60 * 1000;
+            assertTrue(mBreaker.allowRequest());
+            mBreaker.recordFailure();
+        }
+        mNow += 5 * 60 * 1000;
+        assertTrue(mBreaker.allowRequest());
+    }
+
+    @Test
+    public void canceledTrial_letsAnotherTrialThrough() throws Exception {
+        openBreaker();
+        mNow += 30000;
+        assertTrue(mBreaker.allowRequest());
+        mBreaker.recordCanceled();
+        assertTrue(mBreaker.allowRequest());
+    }
+
+    private void openBreaker() {
+        for (int i = 0; i < 5; i++) {
+            mBreaker.recordFailure();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.android.booklisting;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit test of the percentiles of {@link LatencyWindow}.
+ */
+public class LatencyWindowTest {
+
+    @Test
+    public void percentile_ofEmptyWindowIsMinusOne() throws Exception {
+        LatencyWindow window = new LatencyWindow(8);
+        assertEquals(0, window.getSampleCount());
+        assertEquals(-1, window.getPercentile(0.9));
+    }
+
+    @Test
+    public void percentile_isNearestRank() throws Exception {
+        LatencyWindow window = new LatencyWindow(100);
+        for (int latency = 100; latency >= 1; latency--) {
+            window.record(latency);
+        }
+        assertEquals(1, window.getPercentile(0.01));
+        assertEquals(50, window.getPercentile(0.5));
+        assertEquals(90, window.getPercentile(0.9));
+        assertEquals(100, window.getPercentile(1));
+    }
+
+    @Test
+    public void percentile_ofSingleSampleIsThatSample() throws Exception {
+        LatencyWindow window = new LatencyWindow(8);
+        window.record(42);
+        assertEquals(42, window.getPercentile(0.01));
+        assertEquals(42, window.getPercentile(0.99));
+    }
+
+    @Test
+    public void window_keepsOnlyMostRecentSamples() throws Exception {
+        LatencyWindow window = new LatencyWindow(4);
+        for (int i = 0; i < 4; i++) {
+            window.record(1000);
+        }
+        for (int i = 0; i < 4; i++) {
+            window.record(10);
+        }
+        assertEquals(4, window.getSampleCount());
+        assertEquals(10, window.getPercentile(1));
+    }
+}
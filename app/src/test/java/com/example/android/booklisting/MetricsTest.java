@@ -0,0 +1,63 @@
+package com.example.android.booklisting;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit test of the percentiles of the histograms of {@link Metrics}.
+ */
+public class MetricsTest {
+
+    /**
+     * Max ratio of a reported percentile to the real one, which is the width of a bucket.
+     */
+    private static final double BUCKET_RATIO = Math.pow(2, 0.25);
+
+    @Test
+    public void emptyHistogram_reportsZero() throws Exception {
+        Metrics.Summary summary = new Metrics.Histogram().getSummary("phase");
+        assertEquals("phase", summary.getPhase());
+        assertEquals(0, summary.getCount());
+        assertEquals(0, summary.getP50Micros());
+        assertEquals(0, summary.getP99Micros());
+    }
+
+    @Test
+    public void singleDuration_isEveryPercentile() throws Exception {
+        Metrics.Histogram histogram = new Metrics.Histogram();
+        histogram.record(1000);
+        Metrics.Summary summary = histogram.getSummary("phase");
+        assertEquals(1, summary.getCount());
+        assertNear(1000, summary.getP50Micros());
+        assertNear(1000, summary.getP90Micros());
+        assertNear(1000, summary.getP99Micros());
+    }
+
+    @Test
+    public void percentiles_areWithinOneBucket() throws Exception {
+        Metrics.Histogram histogram = new Metrics.Histogram();
+        for (int millis = 1; millis <= 100; millis++) {
+            histogram.record(millis * 1000L);
+        }
+        Metrics.Summary summary = histogram.getSummary("phase");
+        assertEquals(100, summary.getCount());
+        assertNear(50000, summary.getP50Micros());
+        assertNear(90000, summary.getP90Micros());
+        assertNear(99000, summary.getP99Micros());
+    }
+
+    @Test
+    public void tinyAndHugeDurations_areKeptInTheEndBuckets() throws Exception {
+        Metrics.Histogram histogram = new Metrics.Histogram();
+        histogram.record(0);
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(2, histogram.getPercentile(0.5));
+        assertTrue(histogram.getPercentile(1) >= 1L << 32);
+    }
+
+    private static void assertNear(long expected, long actual) {
+        assertTrue(actual + " is not within a bucket of " + expected,
+                actual >= expected && actual <= expected * BUCKET_RATIO + 1);
+    }
+}
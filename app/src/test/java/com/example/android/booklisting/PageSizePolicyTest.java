@@ -0,0 +1,60 @@
+package com.example.android.booklisting;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit test of the page size that {@link PageSizePolicy} picks from the request timings.
+ */
+public class PageSizePolicyTest {
+
+    @Test
+    public void pageSize_isDefaultWithoutTimings() throws Exception {
+        assertEquals(PageSizePolicy.DEFAULT_PAGE_SIZE, new PageSizePolicy().getPageSize());
+    }
+
+    @Test
+    public void pageSize_isDefaultWithoutThroughput() throws Exception {
+        PageSizePolicy policy = new PageSizePolicy();
+        // A body that arrives in no time says nothing about the throughput.
+        policy.recordRequest(100, 0, 100000, 10);
+        assertEquals(PageSizePolicy.DEFAULT_PAGE_SIZE, policy.getPageSize());
+    }
+
+    @Test
+    public void pageSize_isLargestOnFastLink() throws Exception {
+        PageSizePolicy policy = new PageSizePolicy();
+        // 50 ms latency, 1 MB/s, 1 KB per book: 40 books arrive in 90 ms.
+        policy.recordRequest(50, 10, 10000, 10);
+        assertEquals(40, policy.getPageSize());
+    }
+
+    @Test
+    public void pageSize_fitsTheTimeBudget() throws Exception {
+        PageSizePolicy policy = new PageSizePolicy();
+        // 100 ms latency, 100 KB/s, 10 KB per book: 10 books arrive in 1.1 s, 20 in 2.1 s.
+        policy.recordRequest(100, 1000, 100000, 10);
+        assertEquals(10, policy.getPageSize());
+    }
+
+    @Test
+    public void pageSize_isSmallestOnSlowLink() throws Exception {
+        PageSizePolicy policy = new PageSizePolicy();
+        policy.recordRequest(2000, 1000, 100000, 10);
+        assertEquals(5, policy.getPageSize());
+    }
+
+    @Test
+    public void pageSize_followsTheLinkGradually() throws Exception {
+        PageSizePolicy policy = new PageSizePolicy();
+        policy.recordRequest(50, 10, 10000, 10);
+        // A single slow request only moves the averages part of the way.
+        policy.recordRequest(2000, 1000, 100000, 10);
+        assertEquals(40, policy.getPageSize());
+        for (int i = 0; i < 20; i++) {
+            policy.recordRequest(2000, 1000, 100000, 10);
+        }
+        assertEquals(5, policy.getPageSize());
+    }
+}
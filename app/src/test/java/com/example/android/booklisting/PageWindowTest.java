@@ -0,0 +1,74 @@
+package com.example.android.booklisting;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit test of the append, prepend and eviction of {@link PageWindow}.
+ */
+public class PageWindowTest {
+
+    @Test
+    public void emptyWindow_hasNoPage() throws Exception {
+        PageWindow window = new PageWindow(3);
+        assertTrue(window.isEmpty());
+        assertEquals(0, window.getFirstStart());
+        assertEquals(0, window.getLastStart());
+        assertEquals(0, window.getNextStart());
+        assertFalse(window.contains(0));
+    }
+
+    @Test
+    public void append_extendsWindowAtTheEnd() throws Exception {
+        PageWindow window = new PageWindow(3);
+        assertEquals(0, window.appendPage(0, books(10)));
+        assertEquals(0, window.appendPage(10, books(10)));
+        assertEquals(0, window.getFirstStart());
+        assertEquals(10, window.getLastStart());
+        assertEquals(20, window.getNextStart());
+        assertTrue(window.contains(10));
+    }
+
+    @Test
+    public void append_evictsFirstPagesThatNoLongerFit() throws Exception {
+        PageWindow window = new PageWindow(2);
+        window.appendPage(0, books(10));
+        window.appendPage(10, books(10));
+        assertEquals(10, window.appendPage(20, books(5)));
+        assertFalse(window.contains(0));
+        assertEquals(10, window.getFirstStart());
+        assertEquals(25, window.getNextStart());
+    }
+
+    @Test
+    public void prepend_evictsLastPagesThatNoLongerFit() throws Exception {
+        PageWindow window = new PageWindow(2);
+        window.appendPage(20, books(10));
+        window.appendPage(30, books(7));
+        assertEquals(7, window.prependPage(10, books(10)));
+        assertFalse(window.contains(30));
+        assertEquals(10, window.getFirstStart());
+        assertEquals(20, window.getLastStart());
+        assertEquals(30, window.getNextStart());
+    }
+
+    @Test
+    public void clear_removesEveryPage() throws Exception {
+        PageWindow window = new PageWindow(2);
+        window.appendPage(0, books(10));
+        window.clear();
+        assertTrue(window.isEmpty());
+    }
+
+    private static List<Book> books(int count) {
+        List<Book> books = new ArrayList<>();
+        for (int index = 0; index < count; index++) {
+            books.add(new Book("", "Title " + index, "", "", "", 0, 0, "", null));
+        }
+        return books;
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.android.booklisting;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit test of the backoff and the retryable response codes of {@link RetryPolicy}.
+ */
+public class RetryPolicyTest {
+
+    @Test
+    public void backoff_staysWithinExponentialBound() throws Exception {
+        for (int i = 0; i < 1000; i++) {
+            assertInRange(RetryPolicy.getBackoffMillis(1), 0, 500);
+            assertInRange(RetryPolicy.getBackoffMillis(2), 0, 1000);
+            assertInRange(RetryPolicy.getBackoffMillis(3), 0, 2000);
+        }
+    }
+
+    @Test
+    public void backoff_isCappedForLateAttempts() throws Exception {
+        for (int i = 0; i < 1000; i++) {
+            assertInRange(RetryPolicy.getBackoffMillis(10), 0, 4000);
+            assertInRange(RetryPolicy.getBackoffMillis(100), 0, 4000);
+        }
+    }
+
+    @Test
+    public void backoff_isJittered() throws Exception {
+        long first = RetryPolicy.getBackoffMillis(3);
+        boolean varied = false;
+        for (int i = 0; i < 100 && !varied; i++) {
+            varied = RetryPolicy.getBackoffMillis(3) != first;
+        }
+        assertTrue(varied);
+    }
+
+    @Test
+    public void retryable_onlyForTimeoutThrottlingAndServerErrors() throws Exception {
+        assertTrue(RetryPolicy.isRetryable(408));
+        assertTrue(RetryPolicy.isRetryable(429));
+        assertTrue(RetryPolicy.isRetryable(500));
+        assertTrue(RetryPolicy.isRetryable(503));
+        assertFalse(RetryPolicy.isRetryable(200));
+        assertFalse(RetryPolicy.isRetryable(400));
+        assertFalse(RetryPolicy.isRetryable(404));
+    }
+
+    private static void assertInRange(long value, long min, long max) {
+        assertTrue(value + " is not in [" + min + ", " + max + "]", value >= min && value <= max);
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.android.booklisting;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit test of the page math of {@link SearchResult}.
+ */
+public class SearchResultTest {
+
+    @Test
+    public void firstPage() throws Exception {
+        SearchResult result = result(0, 10, 10, 25);
+        assertEquals(1, result.getPageNumber());
+        assertEquals(3, result.getPageCount());
+        assertEquals(10, result.getNextStart());
+        assertFalse(result.hasPreviousPage());
+        assertTrue(result.hasNextPage());
+    }
+
+    @Test
+    public void lastPartialPage() throws Exception {
+        SearchResult result = result(20, 10, 5, 25);
+        assertEquals(3, result.getPageNumber());
+        assertEquals(3, result.getPageCount());
+        assertTrue(result.hasPreviousPage());
+        assertFalse(result.hasNextPage());
+    }
+
+    @Test
+    public void offsetNotMultipleOfPageSize() throws Exception {
+        // The page size has grown from 5 to 10 after the first three pages.
+        SearchResult result = result(15, 10, 10, 100);
+        assertEquals(3, result.getPageNumber());
+        assertEquals(11, result.getPageCount());
+        assertEquals(25, result.getNextStart());
+    }
+
+    @Test
+    public void onlyPage() throws Exception {
+        SearchResult result = result(0, 20, 3, 3);
+        assertEquals(1, result.getPageNumber());
+        assertEquals(1, result.getPageCount());
+        assertFalse(result.hasPreviousPage());
+        assertFalse(result.hasNextPage());
+    }
+
+    @Test
+    public void imageUrls_followTheBooks() throws Exception {
+        SearchResult result = result(0, 10, 3, 3);
+        assertEquals(Arrays.asList("cover0", "cover1", "cover2"), result.getImageUrls());
+        assertFalse(result.isEmpty());
+        assertTrue(result(0, 10, 0, 0).isEmpty());
+    }
+
+    private static SearchResult result(int start, int count, int bookCount, int resultCount) {
+        List<Book> books = new ArrayList<>();
+        for (int index = 0; index < bookCount; index++) {
+            books.add(new Book("", "Title " + index, "", "", "", 0, 0, "cover" + index, null));
+        }
+        return new SearchResult("keywords", start, count, books, resultCount, false);
+    }
+}
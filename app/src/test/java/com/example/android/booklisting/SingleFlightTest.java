@@ -0,0 +1,202 @@
+package com.example.android.booklisting;
+
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit test of the merging and the cancellation of {@link SingleFlight}.
+ */
+public class SingleFlightTest {
+
+    @Test
+    public void concurrentCalls_shareOneRun() throws Exception {
+        final SingleFlight<String, String> flights = new SingleFlight<>();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger runCount = new AtomicInteger();
+        final SingleFlight.Work<String> work = new SingleFlight.Work<String>() {
+            @Override
+            public String run(CancellationToken token) {
+                runCount.incrementAndGet();
+                started.countDown();
+                await(release);
+                return "result";
+            }
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> first = executor.submit(call(flights, "key", null, work));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            Future<String> second = executor.submit(call(flights, "key", null, work));
+            // Wait for the second caller to join the flight before the work finishes.
+            while (flights.getMergedCount() == 0) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+
+            assertEquals("result", first.get(5, TimeUnit.SECONDS));
+            assertEquals("result", second.get(5, TimeUnit.SECONDS));
+            assertEquals(1, runCount.get());
+            assertEquals(1, flights.getMergedCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void sequentialCalls_runAgain() throws Exception {
+        SingleFlight<String, Integer> flights = new SingleFlight<>();
+        final AtomicInteger runCount = new AtomicInteger();
+        SingleFlight.Work<Integer> work = new SingleFlight.Work<Integer>() {
+            @Override
+            public Integer run(CancellationToken token) {
+                return runCount.incrementAndGet();
+            }
+        };
+        assertEquals(Integer.valueOf(1), flights.execute("key", null, work));
+        assertEquals(Integer.valueOf(2), flights.execute("key", null, work));
+        assertEquals(0, flights.getMergedCount());
+    }
+
+    @Test
+    public void canceledWaiter_returnsNullAtOnce() throws Exception {
+        final SingleFlight<String, String> flights = new SingleFlight<>();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final SingleFlight.Work<String> work = new SingleFlight.Work<String>() {
+            @Override
+            public String run(CancellationToken token) {
+                started.countDown();
+                await(release);
+                return "result";
+            }
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> first = executor.submit(call(flights, "key", null, work));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            CancellationToken token = new CancellationToken();
+            Future<String> second = executor.submit(call(flights, "key", token, work));
+            while (flights.getMergedCount() == 0) {
+                Thread.sleep(1);
+            }
+            token.cancel();
+
+            assertNull(second.get(5, TimeUnit.SECONDS));
+            release.countDown();
+            assertEquals("result", first.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void sharedWork_isCanceledWhenEveryCallerIsCanceled() throws Exception {
+        final SingleFlight<String, String> flights = new SingleFlight<>();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch workCanceled = new CountDownLatch(1);
+        final SingleFlight.Work<String> work = new SingleFlight.Work<String>() {
+            @Override
+            public String run(CancellationToken token) {
+                token.addOnCancelListener(new CancellationToken.OnCancelListener() {
+                    @Override
+                    public void onCancel() {
+                        workCanceled.countDown();
+                    }
+                });
+                started.countDown();
+                await(workCanceled);
+                return null;
+            }
+        };
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            CancellationToken token = new CancellationToken();
+            Future<String> caller = executor.submit(call(flights, "key", token, work));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            token.cancel();
+
+            assertTrue(workCanceled.await(5, TimeUnit.SECONDS));
+            assertNull(caller.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void callerAfterEveryCallerLeft_startsNewFlight() throws Exception {
+        final SingleFlight<String, String> flights = new SingleFlight<>();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger runCount = new AtomicInteger();
+        final SingleFlight.Work<String> work = new SingleFlight.Work<String>() {
+            @Override
+            public String run(CancellationToken token) {
+                if (runCount.incrementAndGet() == 1) {
+                    // The abandoned work keeps running until it is released.
+                    started.countDown();
+                    await(release);
+                }
+                return "result";
+            }
+        };
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            CancellationToken token = new CancellationToken();
+            Future<String> abandoned = executor.submit(call(flights, "key", token, work));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            token.cancel();
+
+            assertEquals("result", flights.execute("key", null, work));
+            assertEquals(2, runCount.get());
+            assertEquals(0, flights.getMergedCount());
+            release.countDown();
+            assertNull(abandoned.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void uncheckedException_isRethrownToTheCaller() throws Exception {
+        SingleFlight<String, String> flights = new SingleFlight<>();
+        flights.execute("key", null, new SingleFlight.Work<String>() {
+            @Override
+            public String run(CancellationToken token) {
+                throw new IllegalStateException();
+            }
+        });
+    }
+
+    private static <V> Callable<V> call(final SingleFlight<String, V> flights, final String key,
+                                        final CancellationToken token,
+                                        final SingleFlight.Work<V> work) {
+        return new Callable<V>() {
+            @Override
+            public V call() {
+                return flights.execute(key, token, work);
+            }
+        };
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}